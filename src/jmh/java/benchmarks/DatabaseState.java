@@ -0,0 +1,87 @@
+package benchmarks;
+
+import db.DBConnection;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Recipe;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * connection to a copy of a generated database, each fork of a benchmark works on its own copy
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+    @Param({"1000", "100000", "1000000"})
+    public int recipes;
+
+    public ArrayList<Category> categories;
+    public ArrayList<Ingredient> ingredients;
+    private File database;
+
+    @Setup
+    public void connect() throws Exception {
+        database = Dataset.copy(recipes, "bench");
+        System.setProperty("recipe.db.path", database.getPath());
+        DBConnection.connect();
+        categories = Category.all();
+        ingredients = Ingredient.all();
+    }
+
+    @TearDown
+    public void close() {
+        DBConnection.close();
+        database.delete();
+        new File(database.getPath() + "-wal").delete();
+        new File(database.getPath() + "-shm").delete();
+    }
+
+    /**
+     * @return id of a random generated recipe
+     */
+    public int randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(recipes);
+    }
+
+    /**
+     * @return a random category, popular ones as often as others
+     */
+    public Category randomCategory() {
+        return categories.get(ThreadLocalRandom.current().nextInt(categories.size()));
+    }
+
+    /**
+     * @return a random ingredient
+     */
+    public Ingredient randomIngredient() {
+        return ingredients.get(ThreadLocalRandom.current().nextInt(ingredients.size()));
+    }
+
+    /**
+     * new recipe with generated text, 2 categories and 6 ingredients that exist in database
+     *
+     * @return unsaved recipe
+     */
+    public Recipe newRecipe() {
+        ArrayList<Category> recipeCategories = new ArrayList<>();
+        ArrayList<Ingredient> recipeIngredients = new ArrayList<>();
+        while (recipeCategories.size() < 2) {
+            Category category = randomCategory();
+            if (!recipeCategories.contains(category))
+                recipeCategories.add(category);
+        }
+        while (recipeIngredients.size() < 6) {
+            Ingredient ingredient = randomIngredient();
+            if (!recipeIngredients.contains(ingredient))
+                recipeIngredients.add(ingredient);
+        }
+        return new Recipe("benchmark recipe", Dataset.instructions(ThreadLocalRandom.current()), recipeCategories, recipeIngredients);
+    }
+}
@@ -0,0 +1,179 @@
+package benchmarks;
+
+import db.DBConfig;
+import db.DBConnection;
+import db.models.RecipeImporter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+/**
+ * synthetic recipes database for benchmarks. recipes are generated with a fixed seed so every run of
+ * a size gets same data, and imported with {@link RecipeImporter}. databases are kept in
+ * target/benchmarks (recipe.db.bench.dir) and generated only once for each size
+ */
+public abstract class Dataset {
+    public static final int CATEGORIES = 200;
+    public static final int INGREDIENTS = 2000;
+
+    private static final String[] WORDS = {
+            "bake", "boil", "chop", "dice", "fry", "grill", "mix", "pour", "roast", "simmer", "slice", "stir",
+            "whisk", "serve", "season", "marinate", "knead", "fold", "blend", "steam", "toast", "melt", "drain",
+            "peel", "grate", "heat", "cool", "rest", "cover", "glaze", "crisp", "tender", "golden", "fresh",
+            "spicy", "sweet", "sour", "smoky", "creamy", "crunchy", "warm", "cold", "quick", "slow", "light",
+            "rich", "garlic", "lemon", "butter", "onion", "tomato", "pepper", "basil", "ginger", "honey", "rice",
+            "chicken", "beef", "tofu", "pasta", "bread", "soup", "salad", "sauce", "cake", "pie", "stew", "curry"
+    };
+
+    /**
+     * generate missing databases
+     *
+     * @param args sizes, default 1000 100000 1000000
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        String[] sizes = args.length == 0 ? new String[]{"1000", "100000", "1000000"} : args;
+        for (String size : sizes) {
+            System.out.println(file(Integer.parseInt(size)).getPath());
+        }
+    }
+
+    /**
+     * copy of database with given count of recipes, that a benchmark can change
+     *
+     * @param recipes count of recipes
+     * @param name    name of copy
+     * @return database file
+     */
+    public static File copy(int recipes, String name) throws IOException, SQLException {
+        File source = file(recipes);
+        File copy = new File(directory(), name + "-" + recipes + ".db");
+        Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    /**
+     * database with given count of recipes, generated when it does not exist
+     *
+     * @param recipes count of recipes
+     * @return database file
+     */
+    public static synchronized File file(int recipes) throws IOException, SQLException {
+        File database = new File(directory(), "recipes-" + recipes + ".db");
+        if (database.exists())
+            return database;
+        File part = new File(directory(), "recipes-" + recipes + ".db.part");
+        File jsonl = new File(directory(), "recipes-" + recipes + ".jsonl");
+        part.delete();
+        generate(jsonl, recipes);
+
+        System.setProperty("recipe.db.path", part.getPath());
+        System.setProperty("recipe.db.index.enabled", "false"); // index is built by benchmarks when they connect
+        DBConnection.connect();
+        try {
+            RecipeImporter importer = new RecipeImporter(jsonl);
+            importer.setListener((progress) -> System.out.println(progress.imported() + " recipes, "
+                    + progress.recipesPerSecond() + " recipes/s"));
+            importer.run();
+        } finally {
+            DBConnection.close();
+            System.clearProperty("recipe.db.path");
+            System.clearProperty("recipe.db.index.enabled");
+        }
+        new File(part.getPath() + "-wal").delete();
+        new File(part.getPath() + "-shm").delete();
+        jsonl.delete();
+        Files.move(part.toPath(), database.toPath());
+        return database;
+    }
+
+    /**
+     * name of a generated category
+     *
+     * @param index from 0 to CATEGORIES - 1
+     * @return category name
+     */
+    public static String category(int index) {
+        return "category " + index;
+    }
+
+    /**
+     * name of a generated ingredient
+     *
+     * @param index from 0 to INGREDIENTS - 1
+     * @return ingredient name
+     */
+    public static String ingredient(int index) {
+        return "ingredient " + index;
+    }
+
+    /**
+     * random instructions text of generated recipes
+     *
+     * @param random random numbers
+     * @return instructions
+     */
+    public static String instructions(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int words = 20 + random.nextInt(60);
+        for (int i = 0; i < words; i++) {
+            builder.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.append('.').toString();
+    }
+
+    private static File directory() {
+        File directory = new File(DBConfig.setting("bench.dir", "target/benchmarks"));
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * write jsonl file of recipes with 1 to 4 categories and 3 to 12 ingredients, popular categories and
+     * ingredients have more recipes like in real data
+     */
+    private static void generate(File file, int recipes) throws IOException {
+        Random random = new Random(recipes);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(1024);
+            for (int i = 1; i <= recipes; i++) {
+                line.setLength(0);
+                line.append("{\"name\":\"recipe ").append(i).append(' ')
+                        .append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+                        .append(WORDS[random.nextInt(WORDS.length)])
+                        .append("\",\"instructions\":\"").append(instructions(random)).append("\",\"categories\":[");
+                names(line, random, 1 + random.nextInt(4), CATEGORIES, "category ");
+                line.append("],\"ingredients\":[");
+                names(line, random, 3 + random.nextInt(10), INGREDIENTS, "ingredient ");
+                line.append("]}\n");
+                writer.append(line);
+            }
+        }
+    }
+
+    private static void names(StringBuilder line, Random random, int count, int total, String prefix) {
+        LinkedHashSet<Integer> picked = new LinkedHashSet<>();
+        while (picked.size() < count) {
+            picked.add(skewed(random, total));
+        }
+        String separator = "";
+        for (int index : picked) {
+            line.append(separator).append('"').append(prefix).append(index).append('"');
+            separator = ",";
+        }
+    }
+
+    /**
+     * random index where small indexes are picked more often
+     */
+    private static int skewed(Random random, int total) {
+        double value = random.nextDouble();
+        return (int) (value * value * total);
+    }
+}
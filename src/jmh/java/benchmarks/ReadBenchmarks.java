@@ -0,0 +1,71 @@
+package benchmarks;
+
+import db.models.Category;
+import db.models.Recipe;
+import db.models.RecipeSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * lookups, lists and searches of recipes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadBenchmarks {
+    private static final int PAGE_SIZE = 20;
+
+    @Benchmark
+    public Recipe find(DatabaseState state) {
+        return Recipe.find(state.randomId());
+    }
+
+    @Benchmark
+    public ArrayList<Recipe> page(DatabaseState state) {
+        return Recipe.page(Math.max(0, state.randomId() - PAGE_SIZE), PAGE_SIZE);
+    }
+
+    /**
+     * whole table, slow on large databases so it runs fewer and longer iterations
+     */
+    @Benchmark
+    @Warmup(iterations = 1, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArrayList<Recipe> all() {
+        return Recipe.all();
+    }
+
+    /**
+     * recipes of any of two random categories
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArrayList<Recipe> categoryRecipes(DatabaseState state) {
+        return Category.getCategoryRecipes(state.randomCategory().getId(), state.randomCategory().getId());
+    }
+
+    /**
+     * recipes with both of two random categories and a random ingredient, by names
+     */
+    @Benchmark
+    public ArrayList<Recipe> search(DatabaseState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new RecipeSearch()
+                .categories(RecipeSearch.Match.ALL, List.of(Dataset.category(random.nextInt(20)), Dataset.category(random.nextInt(20, Dataset.CATEGORIES))))
+                .ingredients(RecipeSearch.Match.ANY, List.of(Dataset.ingredient(random.nextInt(Dataset.INGREDIENTS))))
+                .find();
+    }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import db.models.Recipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * saving new recipes and updating existing ones, each in its own transaction
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WriteBenchmarks {
+
+    /**
+     * recipe to update, loaded before each call so loading is not measured
+     */
+    @State(Scope.Thread)
+    public static class UpdateState {
+        Recipe recipe;
+
+        @Setup(Level.Invocation)
+        public void load(DatabaseState database) {
+            recipe = Recipe.find(database.randomId());
+            recipe.setInstructions(Dataset.instructions(ThreadLocalRandom.current()));
+            recipe.removeCategory(recipe.getCategories().get(0));
+            recipe.addCategory(database.randomCategory());
+        }
+    }
+
+    @Benchmark
+    public int insert(DatabaseState state) {
+        Recipe recipe = state.newRecipe();
+        recipe.save();
+        return recipe.getId();
+    }
+
+    /**
+     * new instructions and one category replaced
+     */
+    @Benchmark
+    public void update(UpdateState state) {
+        state.recipe.update();
+    }
+}
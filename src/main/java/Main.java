@@ -1,7 +1,38 @@
 import cli.CommandLineInterface;
+import db.DBConfig;
+import db.DBConnection;
+import server.RecipeServer;
+
+import java.io.IOException;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length == 2 && (args[0].equals("--import") || args[0].equals("--export"))) { // bulk commands without menus
+            DBConnection.connect();
+            if (args[0].equals("--import"))
+                CommandLineInterface.importFile(args[1]);
+            else
+                CommandLineInterface.exportFile(args[1]);
+            DBConnection.close();
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--server")) { // json api instead of menus
+            int port = Integer.parseInt(args.length > 1 ? args[1] : DBConfig.setting("server.port", "8080"));
+            DBConnection.connect();
+            try {
+                RecipeServer server = new RecipeServer(port);
+                server.start();
+                System.out.println("listening on port " + server.getPort());
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    server.stop(1);
+                    DBConnection.close();
+                }));
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                DBConnection.close();
+            }
+            return;
+        }
         CommandLineInterface.start();
     }
 }
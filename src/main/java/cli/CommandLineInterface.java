@@ -1,16 +1,32 @@
 package cli;
 
+import db.ConnectionPool;
+import db.DBConfig;
 import db.DBConnection;
+import db.QueryBudget;
+import db.QueryMetrics;
+import db.SlowQueryLog;
+import db.StatementCache;
 import db.models.Category;
 import db.models.Ingredient;
 import db.models.Recipe;
-
+import db.models.RecipeExporter;
+import db.models.RecipeImporter;
+import db.models.RecipeSearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.stream.Collectors;
 
 public abstract class CommandLineInterface {
     private static Scanner scanner = new Scanner(System.in);
+    private static final int STATS_ROWS = 20;
+    private static final int STATS_SQL_WIDTH = 80;
+    private static final int PAGE_SIZE = Integer.parseInt(DBConfig.setting("cli.pageSize", "20"));
 
     /**
      * main menu
@@ -41,7 +57,11 @@ public abstract class CommandLineInterface {
                         clearScreen();
                         purgeData();
                     }
-                    case 4 -> { //exit
+                    case 4 -> { //statistics
+                        clearScreen();
+                        showStats();
+                    }
+                    case 5 -> { //exit
                         clearScreen();
                         System.out.println("Goodby!");
                         DBConnection.close();
@@ -64,6 +84,7 @@ public abstract class CommandLineInterface {
         mainMenu.addOption("manage recipes");
         mainMenu.addOption("manage categories");
         mainMenu.addOption("purge data");
+        mainMenu.addOption("stats");
         mainMenu.addOption("exit");
 
         mainMenu.display();
@@ -96,7 +117,15 @@ public abstract class CommandLineInterface {
                         clearScreen();
                         searchRecipes();
                     }
-                    case 4 -> { //back
+                    case 4 -> { //import recipes
+                        clearScreen();
+                        importRecipes();
+                    }
+                    case 5 -> { //export recipes
+                        clearScreen();
+                        exportRecipes();
+                    }
+                    case 6 -> { //back
                         clearScreen();
                         exit = true;
                     }
@@ -117,6 +146,8 @@ public abstract class CommandLineInterface {
         manageRecipes.addOption("add recipe");
         manageRecipes.addOption("show all recipes");
         manageRecipes.addOption("search in recipes");
+        manageRecipes.addOption("import recipes from file");
+        manageRecipes.addOption("export recipes to file");
         manageRecipes.addOption("back to main menu");
         manageRecipes.display();
     }
@@ -156,65 +187,182 @@ public abstract class CommandLineInterface {
     }
 
     /**
-     * show all recipes menu
+     * import recipes menu
+     */
+    private static void importRecipes() {
+        System.out.println("<--- import recipes --->");
+        System.out.println("enter path of csv or jsonl file :");
+        System.out.println("(csv needs a header with name, instructions, categories and ingredients, use '|' as names seperator)");
+        importFile(scanner.nextLine().trim());
+        System.out.println("(press enter to continue)");
+        scanner.nextLine();
+        clearScreen();
+    }
+
+    /**
+     * import recipes of a csv or jsonl file and print progress, an interrupted import continues where it stopped
+     *
+     * @param path path of file
+     */
+    public static void importFile(String path) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            System.err.println("<--- file not found --->");
+            return;
+        }
+        RecipeImporter importer = new RecipeImporter(file);
+        importer.setListener((progress) -> System.out.println("imported " + progress.imported() + " recipes, "
+                + progress.recipesPerSecond() + " recipes/s"));
+        try {
+            RecipeImporter.Progress progress = importer.run();
+            if (progress.imported() == 0 && progress.elapsedMillis() == 0)
+                System.out.println("<--- file is already imported --->");
+            else
+                System.out.println("<--- " + progress.imported() + " recipes imported, " + progress.skipped() + " records skipped in "
+                        + progress.elapsedMillis() + "ms --->");
+        } catch (IOException | SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * export recipes menu
+     */
+    private static void exportRecipes() {
+        System.out.println("<--- export recipes --->");
+        System.out.println("enter path of csv or jsonl file :");
+        System.out.println("(add .gz to name for a compressed file)");
+        exportFile(scanner.nextLine().trim());
+        System.out.println("(press enter to continue)");
+        scanner.nextLine();
+        clearScreen();
+    }
+
+    /**
+     * export all recipes to a csv or jsonl file and print progress
+     *
+     * @param path path of file
+     */
+    public static void exportFile(String path) {
+        RecipeExporter exporter = new RecipeExporter(new File(path));
+        exporter.setListener((count) -> System.out.println("exported " + count + " recipes"));
+        try {
+            long started = System.currentTimeMillis();
+            long count = exporter.run();
+            System.out.println("<--- " + count + " recipes exported in " + (System.currentTimeMillis() - started) + "ms --->");
+        } catch (IOException | SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * show all recipes menu, recipes are loaded one page at a time in id order
      */
     private static void showAllRecipes() {
+        int pageSize = PAGE_SIZE;
+        ArrayDeque<Integer> previousPages = new ArrayDeque<>(); // start ids of pages before current one
+        int afterId = 0;
+        String message = "";
         boolean exit = false;
         while (!exit) {
-            printShowAllRecipesMenu();
-            if (!scanner.hasNextInt()) {
-                clearScreen();
-                String next = scanner.nextLine();
-                System.err.println("<--- please enter an valid value --->");
-            } else {
-                int choice = scanner.nextInt();
-                scanner.nextLine();
+            ArrayList<Recipe> recipes;
+            boolean hasNext;
+            StringBuilder frame;
+            QueryBudget budget = QueryBudget.open("show all recipes page", Recipe.LOAD_QUERIES);
+            try {
+                recipes = Recipe.page(afterId, pageSize + 1); // one more row tells if there is a next page
+                hasNext = recipes.size() > pageSize;
+                if (hasNext)
+                    recipes.remove(pageSize);
+                frame = printShowAllRecipesMenu(recipes, !previousPages.isEmpty(), hasNext, message);
+            } finally {
+                budget.close(); // logs repeated statements when page took more than its budget
+            }
+            Screen.draw(frame);
+            message = "";
+            String input = scanner.nextLine().trim();
+            if (input.equalsIgnoreCase("n")) {
+                if (hasNext) {
+                    previousPages.push(afterId);
+                    afterId = recipes.get(recipes.size() - 1).getId();
+                } else
+                    message = "<--- this is the last page --->";
+            } else if (input.equalsIgnoreCase("p")) {
+                if (!previousPages.isEmpty())
+                    afterId = previousPages.pop();
+                else
+                    message = "<--- this is the first page --->";
+            } else if (input.toLowerCase().startsWith("j") && isNumber(input.substring(1).trim())) {
+                previousPages.push(afterId);
+                afterId = Math.max(0, Integer.parseInt(input.substring(1).trim()) - 1);
+            } else if (isNumber(input)) {
+                int choice = Integer.parseInt(input);
                 if (choice == -1)
                     exit = true;
                 else {
                     clearScreen();
-                    singelRecipe(choice);
+                    if (!singelRecipe(choice))
+                        message = "<--- recipe not found :( --->"; // shown in next frame, an error printed now is cleared by it
                 }
-            }
+            } else
+                message = "<--- please enter an valid value --->";
         }
         clearScreen();
     }
 
     /**
-     * print show all recipes menu
+     * build frame of show all recipes menu
+     *
+     * @param recipes     recipes of current page
+     * @param hasPrevious there is a page before current one
+     * @param hasNext     there is a page after current one
+     * @param message     error or notice to show under table
+     * @return whole frame
      */
-    private static void printShowAllRecipesMenu() {
-        System.out.println("<--- all recipes menu --->");
-        System.out.println("(select from recipes IDs to enter recipe menu or -1 for exit)");
-        System.out.println();
-        CommandLineTable table = new CommandLineTable();
-        table.setShowVerticalLines(true);
-        table.setHeaders("id", "name", "instructions", "categories", "ingredients");
-        ArrayList<Recipe> recipes = Recipe.all();
-        recipes.forEach(
-                (recipe) -> {
-                    String id = String.valueOf(recipe.getId());
-                    String name = recipe.getName();
-                    String instructions = recipe.getInstructions();
-                    String categories = getRecipeCategoriesText(recipe.getId());
-                    String ingredients = getRecipeIngredientsText(recipe.getId());
-                    table.addRow(id, name, instructions, categories, ingredients);
-                }
-        );
-        table.print();
+    private static StringBuilder printShowAllRecipesMenu(ArrayList<Recipe> recipes, boolean hasPrevious, boolean hasNext, String message) {
+        String newLine = System.lineSeparator();
+        StringBuilder frame = new StringBuilder();
+        frame.append("<--- all recipes menu --->").append(newLine);
+        frame.append("(select from recipes IDs to enter recipe menu or -1 for exit)").append(newLine);
+        frame.append("(").append(hasNext ? "n: next page, " : "").append(hasPrevious ? "p: previous page, " : "")
+                .append("j <id>: jump to recipe id)").append(newLine);
+        frame.append(newLine);
+        if (recipes.isEmpty())
+            frame.append("<--- no recipes --->").append(newLine);
+        else {
+            recipesTable(recipes).render(frame);
+            frame.append("recipes ").append(recipes.get(0).getId()).append(" to ").append(recipes.get(recipes.size() - 1).getId()).append(newLine);
+        }
+        if (!message.isEmpty())
+            frame.append(message).append(newLine);
+        return frame;
+    }
+
+    /**
+     * check if text is an integer
+     *
+     * @param text user input
+     * @return true if text can be parsed as int
+     */
+    private static boolean isNumber(String text) {
+        try {
+            Integer.parseInt(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     /**
      * single recipe menu
      *
      * @param recipeId recipe id
+     * @return false if recipe does not exist, caller reports it
      */
-    private static void singelRecipe(int recipeId) {
-        if (!Recipe.exists(recipeId)) {// check if recipe exists
-            System.err.println("recipe not found :(");
-            return;
-        }
+    private static boolean singelRecipe(int recipeId) {
         Recipe recipe = Recipe.find(recipeId);
+        if (recipe == null) // check if recipe exists
+            return false;
         boolean exit = false;
         while (!exit) {
             printSingleRecipeMenu(recipe);
@@ -264,11 +412,11 @@ public abstract class CommandLineInterface {
                                         System.out.println("enter new categories names :");
                                         System.out.println("(use '-' as seperator )");
                                         String[] categoriesNames = scanner.nextLine().split("-");
-                                        ArrayList<Category> newCategories = recipe.categories(); // initial value of recipe categories
+                                        ArrayList<Category> newCategories = new ArrayList<>(recipe.getCategories()); // initial value of recipe categories
 
                                         for (String categoryName : categoriesNames) { //add only unique categories to ArrayList
-                                            Category newCategory = new Category(categoryName);
-                                            newCategories.add(newCategory);
+                                            if (newCategories.stream().noneMatch((category) -> category.getName().equals(categoryName)))
+                                                newCategories.add(new Category(categoryName));
                                         }
 
                                         recipe.setCategories(newCategories);
@@ -335,11 +483,11 @@ public abstract class CommandLineInterface {
                                         System.out.println("enter new ingredients names :");
                                         System.out.println("(use '-' as seperator )");
                                         String[] ingredientsNames = scanner.nextLine().split("-");
-                                        ArrayList<Ingredient> newIngredients = recipe.ingredients(); // initial value of recipe categories
+                                        ArrayList<Ingredient> newIngredients = new ArrayList<>(recipe.getIngredients()); // initial value of recipe ingredients
 
-                                        for (String ingredientName : ingredientsNames) { //add only unique categories to ArrayList
-                                            Ingredient newIngredient = new Ingredient(ingredientName);
-                                            newIngredients.add(newIngredient);
+                                        for (String ingredientName : ingredientsNames) { //add only unique ingredients to ArrayList
+                                            if (newIngredients.stream().noneMatch((ingredient) -> ingredient.getName().equals(ingredientName)))
+                                                newIngredients.add(new Ingredient(ingredientName));
                                         }
 
                                         recipe.setIngredients(newIngredients);
@@ -398,6 +546,7 @@ public abstract class CommandLineInterface {
             }
         }
         clearScreen();
+        return true;
     }
 
     /**
@@ -415,8 +564,8 @@ public abstract class CommandLineInterface {
         String recipeId = String.valueOf(recipe.getId());
         String recipeName = recipe.getName();
         String recipeInstructions = recipe.getInstructions();
-        String recipeCategories = getRecipeCategoriesText(recipe.getId());
-        String recipeIngredients = getRecipeIngredientsText(recipe.getId());
+        String recipeCategories = getRecipeCategoriesText(recipe);
+        String recipeIngredients = getRecipeIngredientsText(recipe);
         table.addRow(recipeId, recipeName, recipeInstructions, recipeCategories, recipeIngredients);
 
         table.print(); //display current recipe in table
@@ -451,7 +600,7 @@ public abstract class CommandLineInterface {
      * @param recipe recipe object
      */
     private static void printEditSingleRecipeCategoriesTable(Recipe recipe) {
-        ArrayList<Category> categories = recipe.categories(); //get recipe all categories
+        ArrayList<Category> categories = recipe.getCategories(); //get recipe all categories
 
         CommandLineTable table = new CommandLineTable();
         table.setHeaders("id", "name");
@@ -489,7 +638,7 @@ public abstract class CommandLineInterface {
      * @param recipe recipe object
      */
     private static void printEditSingleRecipeIngredientsTable(Recipe recipe) {
-        ArrayList<Ingredient> ingredients = recipe.ingredients(); //get recipe all ingredients
+        ArrayList<Ingredient> ingredients = recipe.getIngredients(); //get recipe all ingredients
 
         CommandLineTable table = new CommandLineTable();
         table.setHeaders("id", "name");
@@ -524,78 +673,39 @@ public abstract class CommandLineInterface {
                     case 1 -> { //search with categories
                         clearScreen();
                         System.out.println("<--- search recipes with category --->");
-                        System.out.println("enter categories names :");
-                        System.out.println("( use '-' as seperator )");
-                        String[] categoriesNames = scanner.nextLine().split("-"); //get categories names from user
-                        int[] categoriesIds = new int[categoriesNames.length];
-
-                        for (int i = 0; i < categoriesIds.length; i++) { // add id of entered category names
-                            if (Category.exists(categoriesNames[i]))
-                                categoriesIds[i] = Category.find(categoriesNames[i]).getId();
-                        }
-                        clearScreen();
-                        ArrayList<Recipe> foundedRecipes = Category.getCategoryRecipes(categoriesIds); // search in recipes with category ids
-
-                        boolean exitCategory = false;
-                        while (!exitCategory) {
-                            System.out.println("<--- founded recipes --->");
-                            System.out.println("(select recipe or enter -1 to exit)");
-                            printSearchRecipesTable(foundedRecipes);
-                            if (!scanner.hasNextInt()) {
-                                clearScreen();
-                                String next = scanner.nextLine();
-                                System.err.println("<--- please enter an valid value --->");
-                            } else {
-                                int categoryChoice = scanner.nextInt();
-                                scanner.nextLine();
-                                if (categoryChoice == -1)
-                                    exitCategory = true;
-                                else {
-                                    clearScreen();
-                                    singelRecipe(categoryChoice);
-                                }
-                            }
-                        }
+                        RecipeSearch search = new RecipeSearch();
+                        search.categories(readMatch(), readNames("categories"));
                         clearScreen();
+                        showFoundRecipes(search.find());
                     }
                     case 2 -> { //search with ingredients
                         clearScreen();
                         System.out.println("<--- search recipes with ingredient --->");
-                        System.out.println("enter ingredients names :");
-                        System.out.println("( use '-' as seperator )");
-                        String[] ingredientsNames = scanner.nextLine().split("-"); //get categories names from user
-                        int[] ingredientsId = new int[ingredientsNames.length];
-
-                        for (int i = 0; i < ingredientsId.length; i++) { // add id of entered category names
-                            if (Ingredient.exists(ingredientsNames[i]))
-                                ingredientsId[i] = Ingredient.find(ingredientsNames[i]).getId();
-                        }
+                        RecipeSearch search = new RecipeSearch();
+                        search.ingredients(readMatch(), readNames("ingredients"));
                         clearScreen();
-                        ArrayList<Recipe> foundedRecipes = Ingredient.getIngredientRecipes(ingredientsId); // search in recipes with category ids
-
-                        boolean exitIngredient = false;
-                        while (!exitIngredient) {
-                            System.out.println("<--- founded recipes --->");
-                            System.out.println("(select recipe or enter -1 to exit)");
-                            printSearchRecipesTable(foundedRecipes);
-                            if (!scanner.hasNextInt()) {
-                                clearScreen();
-                                String next = scanner.nextLine();
-                                System.err.println("<--- please enter an valid value --->");
-                            } else {
-                                int categoryChoice = scanner.nextInt();
-                                scanner.nextLine();
-                                if (categoryChoice == -1)
-                                    exitIngredient = true;
-                                else {
-                                    clearScreen();
-                                    singelRecipe(categoryChoice);
-                                }
-                            }
-                        }
+                        showFoundRecipes(search.find());
+                    }
+                    case 3 -> { //search with categories and ingredients
                         clearScreen();
+                        System.out.println("<--- search recipes with categories and ingredients --->");
+                        RecipeSearch search = new RecipeSearch();
+                        System.out.println("categories :");
+                        search.categories(readMatch(), readNames("categories"));
+                        System.out.println("ingredients :");
+                        search.ingredients(readMatch(), readNames("ingredients"));
+                        clearScreen();
+                        showFoundRecipes(search.find());
                     }
-                    case 3 -> {
+                    case 4 -> { //search by text
+                        clearScreen();
+                        System.out.println("<--- search recipes by text --->");
+                        System.out.println("enter words to find in recipes names and instructions :");
+                        String text = scanner.nextLine();
+                        clearScreen();
+                        showTextSearchResults(text);
+                    }
+                    case 5 -> {
                         clearScreen();
                         exit = true;
                     }
@@ -609,6 +719,100 @@ public abstract class CommandLineInterface {
         clearScreen();
     }
 
+    /**
+     * ranked full text search results menu, one page at a time
+     *
+     * @param text words to search
+     */
+    private static void showTextSearchResults(String text) {
+        int pageSize = PAGE_SIZE;
+        int pages = Math.max(1, (Recipe.countText(text) + pageSize - 1) / pageSize);
+        int page = 0;
+        boolean exit = false;
+        while (!exit) {
+            System.out.println("<--- recipes matching '" + text + "' page " + (page + 1) + " of " + pages + " --->");
+            System.out.println("(select recipe, 0 for next page, -2 for previous page or -1 to exit)");
+            printSearchRecipesTable(Recipe.searchText(text, page, pageSize));
+            if (!scanner.hasNextInt()) {
+                clearScreen();
+                String next = scanner.nextLine();
+                System.err.println("<--- please enter an valid value --->");
+            } else {
+                int choice = scanner.nextInt();
+                scanner.nextLine();
+                clearScreen();
+                switch (choice) {
+                    case -1 -> exit = true;
+                    case 0 -> page = Math.min(pages - 1, page + 1);
+                    case -2 -> page = Math.max(0, page - 1);
+                    default -> {
+                        if (!singelRecipe(choice))
+                            System.err.println("recipe not found :(");
+                    }
+                }
+            }
+        }
+        clearScreen();
+    }
+
+    /**
+     * ask user how found recipes must match entered names
+     *
+     * @return ALL or ANY, ANY when input is not all
+     */
+    private static RecipeSearch.Match readMatch() {
+        System.out.println("recipes must have all, any or none of names ? (all/any/none)");
+        String match = scanner.nextLine().trim();
+        return RecipeSearch.Match.parse(match);
+    }
+
+    /**
+     * read '-' separated names from user
+     *
+     * @param title what names are
+     * @return entered names without blank ones
+     */
+    private static ArrayList<String> readNames(String title) {
+        System.out.println("enter " + title + " names :");
+        System.out.println("( use '-' as seperator )");
+        ArrayList<String> names = new ArrayList<>();
+        for (String name : scanner.nextLine().split("-")) {
+            if (!name.isBlank())
+                names.add(name.trim());
+        }
+        return names;
+    }
+
+    /**
+     * found recipes menu, user can select a recipe or exit
+     *
+     * @param foundedRecipes recipes found by search
+     */
+    private static void showFoundRecipes(ArrayList<Recipe> foundedRecipes) {
+        boolean exit = false;
+        while (!exit) {
+            System.out.println("<--- founded recipes --->");
+            System.out.println("(select recipe or enter -1 to exit)");
+            printSearchRecipesTable(foundedRecipes);
+            if (!scanner.hasNextInt()) {
+                clearScreen();
+                String next = scanner.nextLine();
+                System.err.println("<--- please enter an valid value --->");
+            } else {
+                int recipeChoice = scanner.nextInt();
+                scanner.nextLine();
+                if (recipeChoice == -1)
+                    exit = true;
+                else {
+                    clearScreen();
+                    if (!singelRecipe(recipeChoice))
+                        System.err.println("recipe not found :(");
+                }
+            }
+        }
+        clearScreen();
+    }
+
     /**
      * print search recipes menu
      */
@@ -616,11 +820,23 @@ public abstract class CommandLineInterface {
         Menu menu = new Menu("<--- search in recipes --->");
         menu.addOption("search with categories");
         menu.addOption("search with ingredients");
+        menu.addOption("search with categories and ingredients");
+        menu.addOption("search by text");
         menu.addOption("back to manage recipes");
         menu.display();
     }
 
     private static void printSearchRecipesTable(ArrayList<Recipe> recipes) {
+        recipesTable(recipes).print();
+    }
+
+    /**
+     * table of recipes with their categories and ingredients
+     *
+     * @param recipes loaded recipes
+     * @return table with a row per recipe
+     */
+    private static CommandLineTable recipesTable(ArrayList<Recipe> recipes) {
         CommandLineTable table = new CommandLineTable();
         table.setHeaders("id", "name", "instructions", "categories", "ingredients");
         table.setShowVerticalLines(true);
@@ -630,13 +846,13 @@ public abstract class CommandLineInterface {
                     String id = String.valueOf(recipe.getId());
                     String name = recipe.getName();
                     String instructions = recipe.getInstructions();
-                    String categories = getRecipeCategoriesText(recipe.getId());
-                    String ingredients = getRecipeIngredientsText(recipe.getId());
+                    String categories = getRecipeCategoriesText(recipe);
+                    String ingredients = getRecipeIngredientsText(recipe);
                     table.addRow(id, name, instructions, categories, ingredients);
                 }
         );
 
-        table.print();
+        return table;
     }
 
     /**
@@ -785,7 +1001,8 @@ public abstract class CommandLineInterface {
                                     exitCategory = true;
                                 else {
                                     clearScreen();
-                                    singelRecipe(choice);
+                                    if (!singelRecipe(choice))
+                                        System.err.println("recipe not found :(");
                                 }
                             }
                         }
@@ -823,8 +1040,8 @@ public abstract class CommandLineInterface {
                     String id = String.valueOf(recipe.getId());
                     String name = recipe.getName();
                     String instructions = recipe.getInstructions();
-                    String categories = getRecipeCategoriesText(recipe.getId());
-                    String ingredients = getRecipeIngredientsText(recipe.getId());
+                    String categories = getRecipeCategoriesText(recipe);
+                    String ingredients = getRecipeIngredientsText(recipe);
                     table.addRow(id, name, instructions, categories, ingredients);
                 }
         );
@@ -863,17 +1080,97 @@ public abstract class CommandLineInterface {
         purgeData.display();
     }
 
+    /**
+     * database statistics menu
+     */
+    private static void showStats() {
+        boolean exit = false;
+        while (!exit) {
+            printStats();
+            printStatsMenu();
+            if (!scanner.hasNextInt()) {
+                clearScreen();
+                String next = scanner.nextLine();
+                System.err.println("<--- please enter an valid value --->");
+            } else {
+                int choice = scanner.nextInt();
+                scanner.nextLine();
+                switch (choice) {
+                    case 1 -> clearScreen(); // refresh
+                    case 2 -> { // reset
+                        QueryMetrics.reset();
+                        clearScreen();
+                    }
+                    case 3 -> { // back
+                        clearScreen();
+                        exit = true;
+                    }
+                    default -> {
+                        clearScreen();
+                        System.err.println("please enter an valid value");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * print pool, statement cache and query metrics, slowest sql shapes first
+     */
+    private static void printStats() {
+        StringBuilder frame = new StringBuilder("<--- database statistics --->\n");
+        ConnectionPool.PoolStats pool = DBConnection.poolStats();
+        StatementCache.Stats statements = DBConnection.statementCacheStats();
+        frame.append("pool: readers ").append(pool.busyReaders()).append('/').append(pool.readers())
+                .append(" busy, acquires ").append(pool.readerAcquires() + pool.writerAcquires())
+                .append(", timeouts ").append(pool.timeouts())
+                .append(", wait avg ").append(pool.averageWaitMicros()).append("us max ").append(pool.maxWaitMicros()).append("us\n");
+        frame.append("statement cache: ").append(statements.size()).append(" statements, hit ratio ")
+                .append(String.format("%.2f", statements.hitRatio())).append('\n');
+        if (SlowQueryLog.isEnabled())
+            frame.append("slow queries: ").append(SlowQueryLog.scans()).append(" scans, ")
+                    .append(SlowQueryLog.searches()).append(" index searches\n");
+
+        CommandLineTable table = new CommandLineTable();
+        table.setHeaders("sql", "calls", "rows", "errors", "total ms", "p50 us", "p99 us", "max us");
+        table.setShowVerticalLines(true);
+        DBConnection.queryStats().stream().limit(STATS_ROWS).forEach((stats) -> table.addRow(
+                stats.sql().length() > STATS_SQL_WIDTH ? stats.sql().substring(0, STATS_SQL_WIDTH - 3) + "..." : stats.sql(),
+                String.valueOf(stats.calls()),
+                String.valueOf(stats.rows()),
+                String.valueOf(stats.errors()),
+                String.valueOf(stats.totalMicros() / 1000),
+                String.valueOf(stats.p50Micros()),
+                String.valueOf(stats.p99Micros()),
+                String.valueOf(stats.maxMicros())));
+        if (QueryMetrics.isEnabled())
+            table.render(frame);
+        else
+            frame.append("query metrics are disabled (recipe.db.metrics.enabled)\n");
+        System.out.print(frame);
+    }
+
+    /**
+     * print statistics menu
+     */
+    private static void printStatsMenu() {
+        Menu stats = new Menu("<--- choose desired action --->");
+        stats.addOption("refresh");
+        stats.addOption("reset query statistics");
+        stats.addOption("back");
+        stats.display();
+    }
+
     /**
      * get recipe all categories in string format
      *
-     * @param recipeId recipe id
+     * @param recipe loaded recipe
      * @return string of all categories of recipe
      */
-    private static String getRecipeCategoriesText(int recipeId) {
+    private static String getRecipeCategoriesText(Recipe recipe) {
         StringBuilder builder = new StringBuilder();
 
-        Recipe recipe = Recipe.find(recipeId);
-        ArrayList<Category> recipeCategories = recipe.categories();
+        ArrayList<Category> recipeCategories = recipe.getCategories();
 
         recipeCategories.forEach(
                 (category) -> {
@@ -888,14 +1185,13 @@ public abstract class CommandLineInterface {
     /**
      * get recipe all ingredients in string format
      *
-     * @param recipeId recipe id
+     * @param recipe loaded recipe
      * @return string of all ingredients of recipe
      */
-    private static String getRecipeIngredientsText(int recipeId) {
+    private static String getRecipeIngredientsText(Recipe recipe) {
         StringBuilder builder = new StringBuilder();
 
-        Recipe recipe = Recipe.find(recipeId);
-        ArrayList<Ingredient> recipeCategories = recipe.ingredients();
+        ArrayList<Ingredient> recipeCategories = recipe.getIngredients();
 
         recipeCategories.forEach(
                 (ingredient) -> {
@@ -911,14 +1207,6 @@ public abstract class CommandLineInterface {
      * clear command line screen
      */
     private static void clearScreen() {
-        try {
-            if (System.getProperty("os.name").contains("Windows")) {
-                new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
-            } else {
-                Runtime.getRuntime().exec("clear");
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        Screen.clear();
     }
 }
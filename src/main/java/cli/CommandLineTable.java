@@ -2,11 +2,10 @@ package cli;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 public class CommandLineTable {
-    private static final String HORIZONTAL_SEP = "-";
+    private static final char HORIZONTAL_SEP = '-';
     private String verticalSep;
     private String joinSep;
     private String[] headers;
@@ -34,7 +33,21 @@ public class CommandLineTable {
         rows.add(cells);
     }
 
+    /**
+     * print table with one write to standard output
+     */
     public void print() {
+        StringBuilder builder = new StringBuilder();
+        render(builder);
+        System.out.print(builder);
+    }
+
+    /**
+     * append whole table to given builder
+     *
+     * @param builder frame builder
+     */
+    public void render(StringBuilder builder) {
         int[] maxWidths = headers != null ?
                 Arrays.stream(headers).mapToInt(String::length).toArray() : null;
 
@@ -49,39 +62,52 @@ public class CommandLineTable {
                 maxWidths[i] = Math.max(maxWidths[i], cells[i].length());
             }
         }
+        if (maxWidths == null)
+            return;
 
         if (headers != null) {
-            printLine(maxWidths);
-            printRow(headers, maxWidths);
-            printLine(maxWidths);
+            appendLine(builder, maxWidths);
+            appendRow(builder, headers, maxWidths);
+            appendLine(builder, maxWidths);
         }
         for (String[] cells : rows) {
-            printRow(cells, maxWidths);
+            appendRow(builder, cells, maxWidths);
         }
         if (headers != null) {
-            printLine(maxWidths);
+            appendLine(builder, maxWidths);
         }
     }
 
-    private void printLine(int[] columnWidths) {
+    private void appendLine(StringBuilder builder, int[] columnWidths) {
         for (int i = 0; i < columnWidths.length; i++) {
-            String line = String.join("", Collections.nCopies(columnWidths[i] +
-                    verticalSep.length() + 1, HORIZONTAL_SEP));
-            System.out.print(joinSep + line + (i == columnWidths.length - 1 ? joinSep : ""));
+            builder.append(joinSep);
+            repeat(builder, HORIZONTAL_SEP, columnWidths[i] + verticalSep.length() + 1);
+            if (i == columnWidths.length - 1)
+                builder.append(joinSep);
         }
-        System.out.println();
+        builder.append(System.lineSeparator());
     }
 
-    private void printRow(String[] cells, int[] maxWidths) {
+    private void appendRow(StringBuilder builder, String[] cells, int[] maxWidths) {
         for (int i = 0; i < cells.length; i++) {
             String s = cells[i];
             String verStrTemp = i == cells.length - 1 ? verticalSep : "";
+            builder.append(verticalSep).append(' ');
             if (rightAlign) {
-                System.out.printf("%s %" + maxWidths[i] + "s %s", verticalSep, s, verStrTemp);
+                repeat(builder, ' ', maxWidths[i] - s.length());
+                builder.append(s);
             } else {
-                System.out.printf("%s %-" + maxWidths[i] + "s %s", verticalSep, s, verStrTemp);
+                builder.append(s);
+                repeat(builder, ' ', maxWidths[i] - s.length());
             }
+            builder.append(' ').append(verStrTemp);
+        }
+        builder.append(System.lineSeparator());
+    }
+
+    private static void repeat(StringBuilder builder, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
         }
-        System.out.println();
     }
 }
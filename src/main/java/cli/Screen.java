@@ -0,0 +1,32 @@
+package cli;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * terminal output with ansi escape codes, a frame is built in memory and written with one flush
+ */
+public abstract class Screen {
+    private static final String CLEAR = "\033[H\033[2J";
+    private static final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+
+    /**
+     * clear terminal and move cursor to top left
+     */
+    public static void clear() {
+        out.print(CLEAR);
+        out.flush();
+    }
+
+    /**
+     * clear terminal and write a whole frame
+     *
+     * @param frame content of screen
+     */
+    public static void draw(CharSequence frame) {
+        out.print(CLEAR);
+        out.append(frame);
+        out.flush();
+    }
+}
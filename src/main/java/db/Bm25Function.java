@@ -0,0 +1,54 @@
+package db;
+
+import org.sqlite.Function;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * sql function bm25(matchinfo(table,'pcnalx'), weight...) that scores a full text match with okapi BM25,
+ * higher score is a better match. optional weights are per column and default to 1
+ */
+class Bm25Function extends Function {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * register function on a connection, every connection needs its own instance
+     *
+     * @param connection sqlite connection
+     */
+    static void register(Connection connection) throws SQLException {
+        Function.create(connection, "bm25", new Bm25Function());
+    }
+
+    @Override
+    protected void xFunc() throws SQLException {
+        ByteBuffer info = ByteBuffer.wrap(value_blob(0)).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        long rows = Integer.toUnsignedLong(info.getInt(8));
+        int averages = 12; // a: average tokens per column
+        int lengths = averages + columns * 4; // l: tokens per column of this row
+        int hits = lengths + columns * 4; // x: three values per phrase and column
+
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int x = hits + (phrase * columns + column) * 3 * 4;
+                double frequency = info.getInt(x);
+                if (frequency == 0)
+                    continue;
+                double documents = info.getInt(x + 8);
+                double average = Math.max(1, info.getInt(averages + column * 4));
+                double length = info.getInt(lengths + column * 4);
+                double weight = column + 1 < args() ? value_double(column + 1) : 1;
+                double idf = Math.max(0.01, Math.log((rows - documents + 0.5) / (documents + 0.5)));
+                score += weight * idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / average));
+            }
+        }
+        result(score);
+    }
+}
@@ -0,0 +1,237 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * bounded pool of sqlite connections, one writer connection that is used by one thread at a time
+ * and a fixed count of reader connections that can be used concurrently (sqlite WAL mode)
+ */
+public class ConnectionPool {
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final ArrayBlockingQueue<Connection> idleReaders;
+    private final ArrayList<Connection> readers = new ArrayList<>();
+    private final long acquireTimeoutMillis;
+    private final IdentityHashMap<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+    private final AtomicLong readerAcquires = new AtomicLong();
+    private final AtomicLong writerAcquires = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * open all connections of pool and apply pragmas of config on each of them
+     *
+     * @param config database settings
+     */
+    public ConnectionPool(DBConfig config) throws SQLException {
+        this.acquireTimeoutMillis = config.getAcquireTimeoutMillis();
+        this.writer = open(config);
+        statementCaches.put(writer, new StatementCache(writer, config.getStatementCacheSize()));
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, config.getReaders()));
+        for (int i = 0; i < config.getReaders(); i++) {
+            Connection reader = open(config);
+            execute(reader, "pragma query_only=1");
+            readers.add(reader);
+            statementCaches.put(reader, new StatementCache(reader, config.getStatementCacheSize()));
+            idleReaders.add(reader);
+        }
+    }
+
+    /**
+     * open a connection with pragmas of config and application sql functions
+     */
+    private static Connection open(DBConfig config) throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl());
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : config.getPragmas().entrySet()) {
+                statement.execute("pragma " + pragma.getKey() + "=" + pragma.getValue());
+            }
+            Bm25Function.register(connection); // ranking of full text search
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * run pragmas or other setup statements on a new connection
+     */
+    private static void execute(Connection connection, String... SQLs) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String SQL : SQLs) {
+                statement.execute(SQL);
+            }
+        }
+    }
+
+    /**
+     * borrow writer connection, the same thread can borrow it again without waiting
+     *
+     * @return writer connection
+     */
+    public Connection acquireWriter() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("timed out waiting for writer connection after " + acquireTimeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for writer connection", e);
+        }
+        recordWait(start);
+        writerAcquires.incrementAndGet();
+        return writer;
+    }
+
+    /**
+     * give back writer connection borrowed by {@link #acquireWriter()}
+     */
+    public void releaseWriter() {
+        if (writerLock.isHeldByCurrentThread())
+            writerLock.unlock();
+    }
+
+    /**
+     * check if current thread has borrowed writer connection
+     *
+     * @return true if current thread holds writer
+     */
+    public boolean holdsWriter() {
+        return writerLock.isHeldByCurrentThread();
+    }
+
+    /**
+     * borrow a reader connection, when pool has no readers or current thread holds writer,
+     * writer is returned so reads see uncommitted changes of current thread
+     *
+     * @return reader connection or writer
+     */
+    public Connection acquireReader() throws SQLException {
+        if (readers.isEmpty() || holdsWriter())
+            return acquireWriter();
+        long start = System.nanoTime();
+        Connection reader;
+        try {
+            reader = idleReaders.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for reader connection", e);
+        }
+        if (reader == null) {
+            timeouts.incrementAndGet();
+            throw new SQLException("timed out waiting for reader connection after " + acquireTimeoutMillis + "ms");
+        }
+        recordWait(start);
+        readerAcquires.incrementAndGet();
+        return reader;
+    }
+
+    /**
+     * give back connection borrowed by {@link #acquireReader()}
+     *
+     * @param connection borrowed connection
+     */
+    public void releaseReader(Connection connection) {
+        if (connection == writer)
+            releaseWriter();
+        else
+            idleReaders.offer(connection);
+    }
+
+    private void recordWait(long start) {
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    /**
+     * statement cache of a connection of this pool
+     *
+     * @param connection pooled connection
+     * @return statement cache of connection
+     */
+    StatementCache statementCache(Connection connection) {
+        return statementCaches.get(connection);
+    }
+
+    /**
+     * metrics of statement caches of all connections
+     *
+     * @return summed statement cache metrics
+     */
+    public StatementCache.Stats statementCacheStats() {
+        int size = 0;
+        long hits = 0, misses = 0, evictions = 0;
+        for (StatementCache cache : statementCaches.values()) {
+            size += cache.size();
+            hits += cache.hits();
+            misses += cache.misses();
+            evictions += cache.evictions();
+        }
+        return new StatementCache.Stats(size, hits, misses, evictions);
+    }
+
+    /**
+     * current metrics of pool
+     *
+     * @return snapshot of pool metrics
+     */
+    public PoolStats stats() {
+        long acquires = readerAcquires.get() + writerAcquires.get();
+        return new PoolStats(
+                readers.size(),
+                readers.size() - idleReaders.size(),
+                writerLock.isLocked(),
+                writerLock.getQueueLength(),
+                readerAcquires.get(),
+                writerAcquires.get(),
+                timeouts.get(),
+                acquires == 0 ? 0 : totalWaitNanos.get() / acquires / 1000,
+                maxWaitNanos.get() / 1000
+        );
+    }
+
+    /**
+     * close all connections of pool
+     */
+    public void close() throws SQLException {
+        statementCaches.values().forEach(StatementCache::clear);
+        for (Connection reader : readers) {
+            reader.close();
+        }
+        writer.close();
+    }
+
+    /**
+     * snapshot of pool metrics
+     *
+     * @param readers          count of reader connections
+     * @param busyReaders      readers that are borrowed now
+     * @param writerBusy       true if writer is borrowed now
+     * @param writerWaiting    threads waiting for writer
+     * @param readerAcquires   total reader borrows
+     * @param writerAcquires   total writer borrows
+     * @param timeouts         borrows that timed out
+     * @param averageWaitMicros average wait for a connection
+     * @param maxWaitMicros    longest wait for a connection
+     */
+    public record PoolStats(int readers, int busyReaders, boolean writerBusy, int writerWaiting,
+                            long readerAcquires, long writerAcquires, long timeouts,
+                            long averageWaitMicros, long maxWaitMicros) {
+    }
+}
@@ -0,0 +1,142 @@
+package db;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * database settings read from system properties (-Drecipe.db.*) or environment variables (RECIPE_DB_*)
+ */
+public class DBConfig {
+    private static final String LEGACY_PATH = "src/main/resources/database.db";
+    private static final String DEFAULT_PATH = "database.db";
+
+    private final String path;
+    private final Profile profile;
+    private final LinkedHashMap<String, String> pragmas;
+    private final int readers;
+    private final long acquireTimeoutMillis;
+    private final int statementCacheSize;
+
+    /**
+     * named sets of sqlite pragmas applied on every connection
+     */
+    public enum Profile {
+        /**
+         * full sync on every commit, small page cache, no memory mapping
+         */
+        SAFE("wal", "full", 0, -2000, "default"),
+        /**
+         * sync on checkpoints only, 64MB page cache and 256MB memory mapped reads
+         */
+        BALANCED("wal", "normal", 268435456L, -65536, "memory"),
+        /**
+         * no sync, large caches, for bulk loads where the file can be rebuilt after a crash
+         */
+        FAST("wal", "off", 1073741824L, -262144, "memory");
+
+        private final String journalMode, synchronous, tempStore;
+        private final long mmapSize, cacheSize;
+
+        Profile(String journalMode, String synchronous, long mmapSize, long cacheSize, String tempStore) {
+            this.journalMode = journalMode;
+            this.synchronous = synchronous;
+            this.mmapSize = mmapSize;
+            this.cacheSize = cacheSize;
+            this.tempStore = tempStore;
+        }
+    }
+
+    private DBConfig(String path, Profile profile, int readers, long acquireTimeoutMillis, int statementCacheSize) {
+        this.path = path;
+        this.profile = profile;
+        this.readers = readers;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.pragmas = new LinkedHashMap<>();
+        pragmas.put("journal_mode", setting("pragma.journal_mode", profile.journalMode));
+        pragmas.put("synchronous", setting("pragma.synchronous", profile.synchronous));
+        pragmas.put("mmap_size", setting("pragma.mmap_size", String.valueOf(profile.mmapSize)));
+        pragmas.put("cache_size", setting("pragma.cache_size", String.valueOf(profile.cacheSize)));
+        pragmas.put("temp_store", setting("pragma.temp_store", profile.tempStore));
+        pragmas.put("busy_timeout", setting("pragma.busy_timeout", String.valueOf(acquireTimeoutMillis)));
+    }
+
+    /**
+     * read settings of application
+     *
+     * @return database settings
+     */
+    public static DBConfig load() {
+        String path = setting("path", null);
+        if (path == null) // keep using database of older versions when it is there
+            path = !new File(DEFAULT_PATH).exists() && new File(LEGACY_PATH).exists() ? LEGACY_PATH : DEFAULT_PATH;
+        Profile profile = profile(setting("profile", Profile.BALANCED.name()));
+        int readers = Integer.parseInt(setting("pool.readers", "4"));
+        long timeout = Long.parseLong(setting("pool.timeout", "5000"));
+        int statementCache = Integer.parseInt(setting("statementCache", "64"));
+        return new DBConfig(path, profile, readers, timeout, statementCache);
+    }
+
+    /**
+     * profile of given name, unknown names fall back to balanced
+     */
+    private static Profile profile(String name) {
+        try {
+            return Profile.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("unknown database profile " + name + ", valid profiles are "
+                    + Arrays.toString(Profile.values()) + ", using " + Profile.BALANCED);
+            return Profile.BALANCED;
+        }
+    }
+
+    /**
+     * value of setting from system property recipe.db.{name} or environment variable RECIPE_DB_{NAME}
+     *
+     * @param name         setting name like pool.readers
+     * @param defaultValue value when setting is not given
+     * @return value of setting
+     */
+    public static String setting(String name, String defaultValue) {
+        String value = System.getProperty("recipe.db." + name);
+        if (value == null)
+            value = System.getenv("RECIPE_DB_" + name.replace('.', '_').toUpperCase(Locale.ROOT));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getUrl() {
+        return "jdbc:sqlite:" + path;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * pragmas applied on every connection in order
+     *
+     * @return pragma name to value
+     */
+    public Map<String, String> getPragmas() {
+        return pragmas;
+    }
+
+    public int getReaders() {
+        return readers;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+}
@@ -1,62 +1,394 @@
 package db;
 
 
+import db.cache.IdentityMap;
+import db.index.RecipeIndex;
+import db.migrations.MigrationRunner;
+import db.migrations.Migrations;
+import db.models.RecipeImporter;
+import db.models.WriteBehind;
+
+import java.io.File;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class DBConnection {
-    private static Connection connection;
-    private static final String dbPath = "jdbc:sqlite:src/main/resources/database.db"; //database path
+    private static ConnectionPool pool;
+    private static DBConfig config;
+    // transaction state, only touched by thread that holds writer connection
+    private static int transactionDepth = 0;
+    private static boolean rollbackOnly = false;
+    private static ArrayList<Runnable> afterCommitActions = new ArrayList<>();
 
     /**
      * initial connection
      */
     public static void connect() {
+        connect(DBConfig.load());
+    }
+
+    /**
+     * initial connection with given settings
+     *
+     * @param dbConfig database settings
+     */
+    public static void connect(DBConfig dbConfig) {
         try {
-            connection = DriverManager.getConnection(dbPath);
-            createTablesIfNotExist();
+            config = dbConfig;
+            File parent = new File(config.getPath()).getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists())
+                parent.mkdirs();
+            pool = new ConnectionPool(config);
+            System.err.println(describeSettings()); // stdout is left to program output
+            migrate();
+            buildIndex();
+            WriteBehind.open(); // queue is shut down by close() of an earlier connection
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    /**
+     * settings that sqlite reports for writer connection
+     *
+     * @return pragma name to active value
+     */
+    public static Map<String, String> activeSettings() throws SQLException {
+        LinkedHashMap<String, String> settings = new LinkedHashMap<>();
+        try (Statement statement = getStatment()) {
+            for (String pragma : config.getPragmas().keySet()) {
+                ResultSet result = statement.executeQuery("pragma " + pragma);
+                settings.put(pragma, result.next() ? result.getString(1) : "");
+                result.close();
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * one line description of database file, profile and active pragmas
+     */
+    private static String describeSettings() {
+        StringBuilder builder = new StringBuilder("database ")
+                .append(new File(config.getPath()).getAbsolutePath())
+                .append(" profile ").append(config.getProfile())
+                .append(" readers ").append(config.getReaders());
+        try {
+            activeSettings().forEach((name, value) -> builder.append(' ').append(name).append('=').append(value));
+        } catch (SQLException e) {
+            builder.append(" (").append(e.getMessage()).append(')');
+        }
+        return builder.toString();
+    }
+
     /**
      * close connection
      */
     public static void close() {
+        WriteBehind.shutdown(); // queued writes go to database first
         try {
-            connection.close();
+            pool.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    /**
+     * settings of current connection
+     *
+     * @return database settings
+     */
+    public static DBConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * metrics of connection pool
+     *
+     * @return pool metrics snapshot
+     */
+    public static ConnectionPool.PoolStats poolStats() {
+        return pool.stats();
+    }
+
+    /**
+     * metrics of compiled statements cache
+     *
+     * @return statement cache metrics of all pooled connections
+     */
+    public static StatementCache.Stats statementCacheStats() {
+        return pool.statementCacheStats();
+    }
+
+    /**
+     * metrics of executed statements by sql shape
+     *
+     * @return shapes with most total time first
+     */
+    public static List<QueryMetrics.Stats> queryStats() {
+        return QueryMetrics.snapshot();
+    }
+
+    /**
+     * database work that runs in a transaction
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * run work as one unit, all statements of work and of model methods it calls are committed together or
+     * not at all. work that runs inside another transaction joins it and is committed by outermost one
+     *
+     * @param work statements to run
+     * @return result of work
+     * @throws SQLException if work or commit failed, transaction is rolled back then
+     */
+    public static <T> T inTransaction(Work<T> work) throws SQLException {
+        beginTransaction();
+        T result;
+        try {
+            result = work.run();
+        } catch (Throwable e) {
+            rollback();
+            throw e;
+        }
+        commit();
+        return result;
+    }
+
+    /**
+     * start a transaction, current thread keeps writer connection until {@link #commit()} or {@link #rollback()}
+     * and all statements it prepares until then run on writer. a transaction started inside another one joins it,
+     * only commit of outermost transaction commits
+     */
+    public static void beginTransaction() throws SQLException {
+        Connection writer = pool.acquireWriter();
+        if (transactionDepth > 0) {
+            transactionDepth++;
+            return;
+        }
+        try {
+            writer.setAutoCommit(false);
+            transactionDepth = 1;
+            rollbackOnly = false;
+        } catch (SQLException e) {
+            pool.releaseWriter();
+            throw e;
+        }
+    }
+
+    /**
+     * commit current transaction and go back to autocommit mode, commit of a joined transaction only leaves it.
+     * actions registered with {@link #afterCommit(Runnable)} run after outermost commit, while writer is still held
+     *
+     * @throws SQLException if commit failed or a joined transaction was rolled back, whole transaction is rolled back then
+     */
+    public static void commit() throws SQLException {
+        if (transactionDepth > 1) {
+            transactionDepth--;
+            pool.releaseWriter(); // borrowed by beginTransaction
+            return;
+        }
+        if (rollbackOnly) {
+            rollback();
+            throw new SQLException("transaction is rolled back because a joined transaction failed");
+        }
+        Connection writer = pool.acquireWriter();
+        ArrayList<Runnable> actions = afterCommitActions;
+        try {
+            writer.commit();
+            writer.setAutoCommit(true);
+            transactionDepth = 0;
+            afterCommitActions = new ArrayList<>();
+        } catch (SQLException e) {
+            rollback(); // gives back writer borrowed by beginTransaction
+            throw e;
+        } finally {
+            pool.releaseWriter(); // borrowed by commit
+        }
+        try {
+            actions.forEach(Runnable::run); // before next writer commits, so in memory state follows commit order
+        } finally {
+            pool.releaseWriter(); // borrowed by beginTransaction
+        }
+    }
+
+    /**
+     * rollback current transaction and go back to autocommit mode. rollback of a joined transaction
+     * only leaves it and marks outer transaction so it is rolled back too
+     */
+    public static void rollback() {
+        if (!pool.holdsWriter() || transactionDepth == 0) // transaction never started
+            return;
+        if (transactionDepth > 1) {
+            transactionDepth--;
+            rollbackOnly = true;
+            pool.releaseWriter();
+            return;
+        }
+        afterCommitActions = new ArrayList<>();
+        transactionDepth = 0;
+        rollbackOnly = false;
+        try {
+            Connection writer = pool.acquireWriter();
+            try {
+                writer.rollback();
+            } finally {
+                try {
+                    writer.setAutoCommit(true);
+                } finally {
+                    pool.releaseWriter(); // borrowed by rollback
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        } finally {
+            pool.releaseWriter(); // borrowed by beginTransaction
+        }
+    }
+
+    /**
+     * check if current thread is in a transaction
+     *
+     * @return true between begin and commit or rollback
+     */
+    public static boolean isInTransaction() {
+        return pool.holdsWriter() && transactionDepth > 0;
+    }
+
+    /**
+     * check if a joined transaction of current transaction was rolled back, commit will fail then
+     *
+     * @return true if current transaction can only be rolled back
+     */
+    public static boolean isRollbackOnly() {
+        return isInTransaction() && rollbackOnly;
+    }
+
+    /**
+     * run action after current transaction is committed, actions are dropped on rollback.
+     * without a transaction action runs now
+     *
+     * @param action change of in memory state that must only be seen for committed data
+     */
+    public static void afterCommit(Runnable action) {
+        if (isInTransaction())
+            afterCommitActions.add(action);
+        else
+            action.run();
+    }
+
+    /**
+     * prepare statement on a pooled connection, queries use a reader connection and other statements use writer.
+     * compiled statement is taken from cache of connection and when statement is closed it goes back to cache
+     * and connection is given back to pool
+     *
+     * @param SQL sql text
+     * @return prepared statement
+     */
     public static PreparedStatement prepareStatment(String SQL) throws SQLException {
-        return connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
+        boolean query = isQuery(SQL);
+        Connection connection = query ? pool.acquireReader() : pool.acquireWriter();
+        Runnable release = query ? () -> pool.releaseReader(connection) : pool::releaseWriter;
+        StatementCache cache = pool.statementCache(connection);
+        try {
+            PreparedStatement statement = cache.take(SQL);
+            return LeasedStatement.wrap(PreparedStatement.class, statement, SQL, () -> {
+                cache.give(SQL, statement);
+                release.run();
+            });
+        } catch (SQLException e) {
+            release.run();
+            throw e;
+        }
     }
 
+    /**
+     * create statement on writer connection, connection is given back to pool when statement is closed
+     *
+     * @return statement
+     */
     public static Statement getStatment() throws SQLException {
-        return connection.createStatement();
+        Connection connection = pool.acquireWriter();
+        try {
+            Statement statement = connection.createStatement();
+            return LeasedStatement.wrap(Statement.class, statement, null, () -> {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    System.err.println(e.getMessage());
+                } finally {
+                    pool.releaseWriter();
+                }
+            });
+        } catch (SQLException e) {
+            pool.releaseWriter();
+            throw e;
+        }
     }
 
     /**
-     * Create tables for application if there is they are not exist
+     * check if sql only reads data
      */
-    private static void createTablesIfNotExist() {
-        String[] queries = new String[]{
-                "create table if not exists categories(id integer not null constraint categories_pk primary key autoincrement,name TEXT not null unique);",
-                "create table if not exists ingredients(id integer not null constraint ingredients_pk primary key autoincrement,name TEXT not null unique);",
-                "create table if not exists recipes(id integer not null constraint recipes_pk primary key autoincrement,name TEXT not null,instructions TEXT not null);",
-                "create table if not exists recipes_ingredients(recipe_id integer not null constraint recipes references recipes,ingredient_id integer not null constraint ingredients references ingredients);",
-                "create table if not exists recipes_categories(recipe_id integer not null constraint recipes references recipes,category_id integer not null constraint categories references categories);"
-        };
+    private static boolean isQuery(String SQL) {
+        String head = SQL.stripLeading().toLowerCase();
+        return head.startsWith("select") || head.startsWith("with") || head.startsWith("explain");
+    }
+
+    /**
+     * bind given values to statement placeholders in order
+     *
+     * @param statement prepared statement
+     * @param params    values of placeholders
+     */
+    public static void bind(PreparedStatement statement, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * placeholders list for an in clause like (?,?,?)
+     *
+     * @param count count of placeholders
+     * @return placeholders list in parentheses
+     */
+    public static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.append(")").toString();
+    }
+
+    /**
+     * load in memory index of link tables unless recipe.db.index.enabled is false
+     */
+    private static void buildIndex() {
+        if (Boolean.parseBoolean(DBConfig.setting("index.enabled", "true")))
+            RecipeIndex.build();
+        else
+            RecipeIndex.clear();
+    }
+
+    /**
+     * bring database schema to latest version
+     */
+    private static void migrate() {
         try {
-            Statement statement = connection.createStatement();
-            for (String query : queries) {
-                statement.execute(query);
-            }
-            statement.close();
+            int applied = MigrationRunner.migrate();
+            if (applied > 0)
+                System.err.println("database schema upgraded to version " + Migrations.latestVersion());
+            RecipeImporter.recoverTextIndex();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            System.err.println(e.getMessage());
         }
     }
 
@@ -65,18 +397,21 @@ public abstract class DBConnection {
      */
     private static void truncateTablesData() {
         String[] SQLs = {
+                "drop table if exists recipes_fts;",
                 "drop table if exists categories;",
                 "drop table if exists recipes;",
                 "drop table if exists ingredients;",
                 "drop table if exists recipes_ingredients;",
-                "drop table if exists recipes_categories;"
+                "drop table if exists recipes_categories;",
+                "drop table if exists import_progress;",
+                "drop table if exists schema_version;"
         };
         try {
-            Statement statement = connection.createStatement();
-            for (String sql : SQLs) {
-                statement.execute(sql);
+            try (Statement statement = getStatment()) {
+                for (String sql : SQLs) {
+                    statement.execute(sql);
+                }
             }
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -87,6 +422,8 @@ public abstract class DBConnection {
      */
     public static void purgeAllData() {
         truncateTablesData();
-        createTablesIfNotExist();
+        IdentityMap.clearAll();
+        migrate();
+        buildIndex();
     }
 }
@@ -0,0 +1,93 @@
+package db;
+
+import db.jfr.QueryEvent;
+
+import java.util.List;
+
+/**
+ * one execution of a statement, measured for {@link QueryMetrics}, {@link SlowQueryLog} and flight recorder.
+ * a query is finished when its result set is closed, other statements when they return
+ */
+class Execution {
+    private final String sql;
+    private final List<Object> params;
+    private final QueryMetrics.Shape shape;
+    private final QueryEvent event;
+    private long nanos;
+    private long rows;
+    private boolean failed;
+    private boolean finished;
+
+    private Execution(String sql, List<Object> params, QueryMetrics.Shape shape, QueryEvent event) {
+        this.sql = sql;
+        this.params = params;
+        this.shape = shape;
+        this.event = event;
+    }
+
+    /**
+     * start measuring execution of sql
+     *
+     * @param sql    sql text
+     * @param params bound parameters of a prepared statement or null
+     * @return execution or null when metrics and slow query log are disabled and flight recorder does not record queries
+     */
+    static Execution start(String sql, List<Object> params) {
+        QueryMetrics.Shape shape = QueryMetrics.shape(sql);
+        QueryEvent event = QueryEvent.start();
+        if (shape == null && event == null && !SlowQueryLog.isEnabled())
+            return null;
+        return new Execution(sql, params, shape, event);
+    }
+
+    /**
+     * shape of sql of execution
+     *
+     * @return sql with literals replaced
+     */
+    String shape() {
+        return shape != null ? shape.sql() : QueryMetrics.normalize(sql);
+    }
+
+    /**
+     * add time spent in sqlite
+     *
+     * @param nanos duration in nanoseconds
+     */
+    void add(long nanos) {
+        this.nanos += nanos;
+    }
+
+    void addRows(long rows) {
+        this.rows += rows;
+    }
+
+    void fail() {
+        failed = true;
+        if (shape != null)
+            shape.error();
+    }
+
+    /**
+     * record execution once
+     */
+    void finish() {
+        if (finished)
+            return;
+        finished = true;
+        if (shape != null && !failed)
+            shape.record(nanos, rows);
+        if (!failed)
+            SlowQueryLog.log(sql, shape(), params, nanos, rows);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sql = shape();
+                event.rows = rows;
+                event.databaseTime = nanos;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+}
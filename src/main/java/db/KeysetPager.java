@@ -0,0 +1,83 @@
+package db;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * iterator over a table in id order that loads one page at a time (where id > last id order by id limit n),
+ * only the current page is kept in memory and no connection is held between pages
+ *
+ * @param <T> model type
+ */
+public class KeysetPager<T> implements Iterator<T> {
+    /**
+     * loads page of rows with id greater than given id in id order
+     *
+     * @param <T> model type
+     */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        List<T> load(int afterId, int limit);
+    }
+
+    private final PageLoader<T> loader;
+    private final ToIntFunction<T> idOf;
+    private final int pageSize;
+    private Iterator<T> page;
+    private int lastId;
+    private boolean lastPage;
+
+    /**
+     * @param loader   page loader
+     * @param idOf     id of a row, pages continue after id of last row
+     * @param pageSize rows per page
+     * @param afterId  start after this id, 0 for first row
+     */
+    public KeysetPager(PageLoader<T> loader, ToIntFunction<T> idOf, int pageSize, int afterId) {
+        this.loader = loader;
+        this.idOf = idOf;
+        this.pageSize = pageSize;
+        this.lastId = afterId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && page.hasNext())
+            return true;
+        if (lastPage)
+            return false;
+        List<T> rows = loader.load(lastId, pageSize);
+        lastPage = rows.size() < pageSize;
+        page = rows.iterator();
+        return page.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T row = page.next();
+        lastId = idOf.applyAsInt(row);
+        return row;
+    }
+
+    /**
+     * lazy ordered stream of all rows, pages are loaded while stream is consumed
+     *
+     * @param loader   page loader
+     * @param idOf     id of a row
+     * @param pageSize rows per page
+     * @return stream of rows in id order
+     */
+    public static <T> Stream<T> stream(PageLoader<T> loader, ToIntFunction<T> idOf, int pageSize) {
+        KeysetPager<T> pager = new KeysetPager<>(loader, idOf, pageSize, 0);
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pager, characteristics), false);
+    }
+}
@@ -0,0 +1,139 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * statement wrapper that gives back its pooled connection when the statement is closed.
+ * closing it closes result sets opened through it and then runs the close action,
+ * which can keep the real statement open for reuse. executions are measured in {@link QueryMetrics} and flight recorder
+ * and counted in open {@link QueryBudget} scopes
+ */
+class LeasedStatement implements InvocationHandler {
+    private final Statement statement;
+    private final String sql;
+    private final ArrayList<Object> params; // bound values for slow query log, null when not needed
+    private final ArrayList<ResultSet> resultSets = new ArrayList<>();
+    private Runnable close;
+
+    private LeasedStatement(Statement statement, String sql, Runnable close) {
+        this.statement = statement;
+        this.sql = sql;
+        this.params = sql != null && SlowQueryLog.isEnabled() ? new ArrayList<>() : null;
+        this.close = close;
+    }
+
+    /**
+     * wrap statement so closing it runs given close action instead of closing real statement
+     *
+     * @param type      statement interface to expose
+     * @param statement real statement
+     * @param sql       sql of a prepared statement, null for a statement that gets sql when executed
+     * @param close     closes or recycles real statement and gives back its connection
+     * @return wrapped statement
+     */
+    static <T extends Statement> T wrap(Class<T> type, T statement, String sql, Runnable close) {
+        Object proxy = Proxy.newProxyInstance(LeasedStatement.class.getClassLoader(), new Class<?>[]{type}, new LeasedStatement(statement, sql, close));
+        return type.cast(proxy);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close" -> {
+                close();
+                return null;
+            }
+            case "isClosed" -> {
+                return close == null;
+            }
+        }
+        if (close == null)
+            throw new SQLException("statement is closed");
+        if (params != null)
+            capture(method, args);
+        boolean execute = method.getName().startsWith("execute");
+        String text = execute && args != null && args.length > 0 && args[0] instanceof String argument ? argument : sql;
+        // parameters are copied now, statement may be bound again before its result set is closed
+        Execution execution = execute && text != null ? Execution.start(text, text == sql && params != null ? new ArrayList<>(params) : null) : null;
+        if (execute && text != null && QueryBudget.isActive())
+            QueryBudget.count(execution != null ? execution.shape() : QueryMetrics.normalize(text));
+        long start = execution == null ? 0 : System.nanoTime();
+        Object result;
+        try {
+            result = method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            if (execution != null) {
+                execution.add(System.nanoTime() - start);
+                execution.fail();
+                execution.finish();
+            }
+            throw e.getCause();
+        }
+        if (execution != null) {
+            execution.add(System.nanoTime() - start);
+            if (result instanceof ResultSet resultSet)
+                result = MeasuredResultSet.wrap(resultSet, execution); // finished when result set is closed
+            else {
+                execution.addRows(changedRows(result));
+                execution.finish();
+            }
+        }
+        if (result instanceof ResultSet resultSet)
+            resultSets.add(resultSet);
+        return result;
+    }
+
+    /**
+     * keep values bound by setters like setInt(index, value), indexes start from 1
+     */
+    private void capture(Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("clearParameters")) {
+            params.clear();
+            return;
+        }
+        if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer index) || index < 1)
+            return;
+        while (params.size() < index) {
+            params.add(null);
+        }
+        params.set(index - 1, name.equals("setNull") ? null : args[1]);
+    }
+
+    /**
+     * rows changed by an update or a batch
+     */
+    private static long changedRows(Object result) {
+        if (result instanceof Integer count)
+            return Math.max(0, count);
+        if (result instanceof int[] counts)
+            return Arrays.stream(counts).filter((count) -> count > 0).sum();
+        return 0;
+    }
+
+    /**
+     * close result sets and run close action only once even if statement closed more than once
+     */
+    private void close() throws SQLException {
+        if (close == null)
+            return;
+        try {
+            for (ResultSet resultSet : resultSets) {
+                resultSet.close(); // resets sqlite statement so connection does not keep a read snapshot
+            }
+            resultSets.clear();
+        } finally {
+            Runnable action = close;
+            close = null;
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * result set wrapper that adds time spent in next and count of returned rows to execution of its query.
+ * execution is finished when result set is closed
+ */
+class MeasuredResultSet implements InvocationHandler {
+    private final ResultSet resultSet;
+    private final Execution execution;
+
+    private MeasuredResultSet(ResultSet resultSet, Execution execution) {
+        this.resultSet = resultSet;
+        this.execution = execution;
+    }
+
+    /**
+     * wrap result set of a query
+     *
+     * @param resultSet real result set
+     * @param execution execution of query
+     * @return wrapped result set
+     */
+    static ResultSet wrap(ResultSet resultSet, Execution execution) {
+        return (ResultSet) Proxy.newProxyInstance(MeasuredResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new MeasuredResultSet(resultSet, execution));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        boolean next = method.getName().equals("next");
+        if (method.getName().equals("close"))
+            execution.finish();
+        long start = next ? System.nanoTime() : 0;
+        Object result;
+        try {
+            result = method.invoke(resultSet, args);
+        } catch (InvocationTargetException e) {
+            if (next)
+                execution.fail();
+            throw e.getCause();
+        }
+        if (next) {
+            execution.add(System.nanoTime() - start);
+            if ((Boolean) result)
+                execution.addRows(1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,197 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * count of statements an operation runs on current thread. an operation opens a budget scope, every statement
+ * executed on same thread until scope is closed is counted in it and in scopes around it. when a scope is closed
+ * with more statements than its budget, sql shapes that ran more than once are logged, which is how an n+1
+ * loop shows up.
+ * <pre>
+ * ArrayList&lt;Recipe&gt; page = QueryBudget.within("show all recipes", 3, () -&gt; Recipe.page(0, 20));
+ * QueryBudget.assertAtMost(3, () -&gt; Recipe.page(0, 1000)); // in a test
+ * </pre>
+ * work an operation hands to other threads is not counted
+ */
+public class QueryBudget implements AutoCloseable {
+    private static final ThreadLocal<QueryBudget> current = new ThreadLocal<>();
+
+    private final String operation;
+    private final int maxQueries;
+    private final QueryBudget parent;
+    private final LinkedHashMap<String, Integer> shapes = new LinkedHashMap<>();
+    private int queries;
+    private boolean closed;
+
+    private QueryBudget(String operation, int maxQueries, QueryBudget parent) {
+        this.operation = operation;
+        this.maxQueries = maxQueries;
+        this.parent = parent;
+    }
+
+    /**
+     * start counting statements of an operation on current thread
+     *
+     * @param operation  name of operation for log
+     * @param maxQueries statements operation may run
+     * @return open scope, close it when operation is done
+     */
+    public static QueryBudget open(String operation, int maxQueries) {
+        QueryBudget budget = new QueryBudget(operation, maxQueries, current.get());
+        current.set(budget);
+        return budget;
+    }
+
+    /**
+     * run work in a budget scope of its own, report is logged when work runs more statements than given
+     *
+     * @param operation  name of operation for log
+     * @param maxQueries statements work may run
+     * @param work       operation to count
+     * @return result of work
+     */
+    public static <T> T within(String operation, int maxQueries, Supplier<T> work) {
+        QueryBudget budget = open(operation, maxQueries);
+        try {
+            return work.get();
+        } finally {
+            budget.close();
+        }
+    }
+
+    /**
+     * check if a scope is open on current thread
+     *
+     * @return true when statements are counted
+     */
+    static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * count a statement in all open scopes of current thread
+     *
+     * @param shape sql shape of statement
+     */
+    static void count(String shape) {
+        for (QueryBudget budget = current.get(); budget != null; budget = budget.parent) {
+            budget.queries++;
+            budget.shapes.merge(shape, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * count statements that work runs on current thread
+     *
+     * @param work operation to measure
+     * @return count of statements
+     */
+    public static int countQueries(Runnable work) {
+        QueryBudget budget = open("count", Integer.MAX_VALUE);
+        try {
+            work.run();
+        } finally {
+            budget.close();
+        }
+        return budget.queries();
+    }
+
+    /**
+     * run work and fail when it runs more statements than given, for tests
+     *
+     * @param maxQueries statements work may run
+     * @param work       operation to check
+     * @throws AssertionError with repeated sql shapes when budget is exceeded
+     */
+    public static void assertAtMost(int maxQueries, Runnable work) {
+        QueryBudget budget = new QueryBudget("assertion", maxQueries, current.get());
+        current.set(budget);
+        try {
+            work.run();
+        } finally {
+            budget.pop();
+        }
+        budget.check();
+    }
+
+    /**
+     * statements counted so far
+     *
+     * @return count of statements
+     */
+    public int queries() {
+        return queries;
+    }
+
+    public boolean isExceeded() {
+        return queries > maxQueries;
+    }
+
+    /**
+     * sql shapes that ran more than once in this scope
+     *
+     * @return shape to count, most frequent first
+     */
+    public Map<String, Integer> repeated() {
+        ArrayList<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        shapes.entrySet().forEach((entry) -> {
+            if (entry.getValue() > 1)
+                entries.add(Map.entry(entry.getKey(), entry.getValue()));
+        });
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        LinkedHashMap<String, Integer> repeated = new LinkedHashMap<>();
+        entries.forEach((entry) -> repeated.put(entry.getKey(), entry.getValue()));
+        return repeated;
+    }
+
+    /**
+     * description of budget and repeated shapes
+     *
+     * @return report text
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder("query budget of ").append(operation).append(": ")
+                .append(queries).append(" statements, budget ").append(maxQueries);
+        List<String> lines = new ArrayList<>();
+        repeated().forEach((shape, count) -> lines.add(count + " x " + shape));
+        if (!lines.isEmpty())
+            builder.append(", repeated:").append(System.lineSeparator()).append(String.join(System.lineSeparator(), lines));
+        return builder.toString();
+    }
+
+    /**
+     * fail when budget is exceeded
+     *
+     * @throws AssertionError with report
+     */
+    public void check() {
+        if (isExceeded())
+            throw new AssertionError(report());
+    }
+
+    /**
+     * stop counting, logs report when budget is exceeded
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        pop();
+        if (isExceeded())
+            System.err.println(report());
+    }
+
+    private void pop() {
+        closed = true;
+        if (current.get() == this) {
+            if (parent == null)
+                current.remove();
+            else
+                current.set(parent);
+        }
+    }
+}
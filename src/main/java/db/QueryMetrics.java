@@ -0,0 +1,141 @@
+package db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * counts, rows, errors and latency of statements grouped by sql shape. a shape is sql text with literals
+ * replaced by ? and lists of placeholders collapsed, so "id in (?,?)" and "id in (?,?,?)" are one shape.
+ * latency of a query is time spent in sqlite, executing statement and stepping its rows, not time caller spends
+ * between rows. disabled with recipe.db.metrics.enabled=false
+ */
+public abstract class QueryMetrics {
+    private static final int MAX_SQL_CACHE = 10000;
+    private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDERS = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final boolean enabled = Boolean.parseBoolean(DBConfig.setting("metrics.enabled", "true"));
+    private static final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Shape> shapesOfSql = new ConcurrentHashMap<>();
+
+    /**
+     * metrics of one sql shape
+     */
+    static class Shape {
+        private final String sql;
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Shape(String sql) {
+            this.sql = sql;
+        }
+
+        String sql() {
+            return sql;
+        }
+
+        /**
+         * add a finished execution
+         *
+         * @param nanos time spent in sqlite
+         * @param rows  rows returned by a query or changed by an update
+         */
+        void record(long nanos, long rows) {
+            latency.record(nanos);
+            this.rows.add(rows);
+        }
+
+        void error() {
+            errors.increment();
+        }
+
+        private Stats stats() {
+            return new Stats(sql, latency.count(), rows.sum(), errors.sum(), latency.totalNanos() / 1000,
+                    latency.percentileNanos(0.5) / 1000, latency.percentileNanos(0.99) / 1000, latency.maxNanos() / 1000);
+        }
+    }
+
+    /**
+     * metrics of a sql shape
+     *
+     * @param sql         shape of sql
+     * @param calls       finished executions
+     * @param rows        rows returned by queries or changed by updates
+     * @param errors      executions that failed
+     * @param totalMicros time of all executions
+     * @param p50Micros   median time of an execution
+     * @param p99Micros   99th percentile time of an execution
+     * @param maxMicros   longest execution
+     */
+    public record Stats(String sql, long calls, long rows, long errors, long totalMicros,
+                        long p50Micros, long p99Micros, long maxMicros) {
+    }
+
+    /**
+     * check if statements are measured
+     *
+     * @return false when disabled by setting
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * metrics of shape of given sql, created on first use
+     *
+     * @param SQL sql text
+     * @return shape metrics or null when metrics are disabled or sql is unknown
+     */
+    static Shape shape(String SQL) {
+        if (!enabled || SQL == null)
+            return null;
+        Shape shape = shapesOfSql.get(SQL);
+        if (shape != null)
+            return shape;
+        shape = shapes.computeIfAbsent(normalize(SQL), Shape::new);
+        if (shapesOfSql.size() < MAX_SQL_CACHE) // sql with literals can have endless variants
+            shapesOfSql.putIfAbsent(SQL, shape);
+        return shape;
+    }
+
+    /**
+     * shape of sql text
+     *
+     * @param SQL sql text
+     * @return sql with literals replaced and whitespace collapsed
+     */
+    public static String normalize(String SQL) {
+        String shape = STRING.matcher(SQL).replaceAll("?");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        shape = PLACEHOLDERS.matcher(shape).replaceAll("?,...");
+        shape = SPACES.matcher(shape).replaceAll(" ").trim();
+        return shape.endsWith(";") ? shape.substring(0, shape.length() - 1).trim() : shape;
+    }
+
+    /**
+     * metrics of all shapes
+     *
+     * @return shapes with most total time first
+     */
+    public static List<Stats> snapshot() {
+        ArrayList<Stats> stats = new ArrayList<>();
+        shapes.values().forEach((shape) -> stats.add(shape.stats()));
+        stats.sort(Comparator.comparingLong(Stats::totalMicros).reversed());
+        return stats;
+    }
+
+    /**
+     * forget all measured statements
+     */
+    public static void reset() {
+        shapesOfSql.clear();
+        shapes.clear();
+    }
+}
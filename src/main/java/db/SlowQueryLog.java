@@ -0,0 +1,226 @@
+package db;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * log of statements that take longer than recipe.db.slowQuery.threshold millis in sqlite. off unless a threshold
+ * of 0 or more is set, bound parameters of every statement are kept while it is on. entries go to rotating files
+ * recipe.db.slowQuery.file (default slow-queries.%g.log) of recipe.db.slowQuery.limit bytes,
+ * recipe.db.slowQuery.files files are kept.
+ * <p>
+ * an entry has duration, rows, bound parameters and kind of query plan. plan of a sql shape is asked from sqlite
+ * with explain query plan on its first slow execution and written with that entry. a plan that reads a whole
+ * table is logged as SCAN with level warning, a plan that only uses indexes as SEARCH.
+ * entries are written by a background thread so a slow statement does not wait for explain and file
+ * and its connection is not used by another statement while it runs
+ */
+public abstract class SlowQueryLog {
+    private static final int MAX_PARAM_LENGTH = 200;
+    private static final int QUEUE_SIZE = 1000;
+
+    private static final long thresholdNanos = Long.parseLong(DBConfig.setting("slowQuery.threshold", "-1")) * 1_000_000L;
+    private static final Logger logger = Logger.getLogger("recipe.slowQuery");
+    private static final HashMap<String, Plan> plans = new HashMap<>(); // only used by writer thread
+    private static final ArrayBlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final AtomicLong scans = new AtomicLong();
+    private static final AtomicLong searches = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static Thread writer;
+
+    /**
+     * kind of query plan
+     */
+    public enum Access {
+        /**
+         * a table or an index is read from start to end
+         */
+        SCAN,
+        /**
+         * rows are found with indexes only
+         */
+        SEARCH,
+        /**
+         * statement has no plan that reads tables, like insert values or pragma
+         */
+        NONE
+    }
+
+    private record Plan(Access access, List<String> steps) {
+    }
+
+    private record Entry(Instant time, String thread, String sql, String shape, List<Object> params, long nanos, long rows) {
+    }
+
+    /**
+     * check if slow statements are logged
+     *
+     * @return false when threshold is negative
+     */
+    public static boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    /**
+     * count of logged slow statements that scan a table
+     *
+     * @return count since start
+     */
+    public static long scans() {
+        return scans.get();
+    }
+
+    /**
+     * count of logged slow statements that only search indexes
+     *
+     * @return count since start
+     */
+    public static long searches() {
+        return searches.get();
+    }
+
+    /**
+     * count of slow statements that were not logged because log could not keep up
+     *
+     * @return count since start
+     */
+    public static long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * queue execution for log when it is slow
+     *
+     * @param sql    sql text
+     * @param shape  sql shape
+     * @param params copy of bound parameters by index from 0 taken at execute, may be null
+     * @param nanos  time in sqlite
+     * @param rows   rows returned or changed
+     */
+    static void log(String sql, String shape, List<Object> params, long nanos, long rows) {
+        if (!isEnabled() || nanos < thresholdNanos || shape.regionMatches(true, 0, "explain", 0, 7))
+            return;
+        Entry entry = new Entry(Instant.now(), Thread.currentThread().getName(), sql, shape,
+                params == null ? List.of() : params, nanos, rows);
+        start();
+        if (!queue.offer(entry))
+            dropped.incrementAndGet();
+    }
+
+    private static synchronized void start() {
+        if (writer != null)
+            return;
+        open();
+        writer = new Thread(SlowQueryLog::run, "recipe-slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static void run() {
+        while (true) {
+            try {
+                write(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void write(Entry entry) {
+        boolean first = !plans.containsKey(entry.shape());
+        Plan plan = plans.computeIfAbsent(entry.shape(), (shape) -> explain(entry.sql(), entry.params()));
+        if (plan.access() == Access.SCAN)
+            scans.incrementAndGet();
+        else if (plan.access() == Access.SEARCH)
+            searches.incrementAndGet();
+
+        StringBuilder text = new StringBuilder();
+        text.append(entry.time()).append(' ').append(plan.access())
+                .append(' ').append(entry.nanos() / 1000).append("us rows=").append(entry.rows())
+                .append(" thread=").append(entry.thread())
+                .append(System.lineSeparator()).append("  sql: ").append(entry.shape());
+        if (!entry.params().isEmpty())
+            text.append(System.lineSeparator()).append("  params: ").append(params(entry.params()));
+        if (first) {
+            for (String step : plan.steps()) {
+                text.append(System.lineSeparator()).append("  plan: ").append(step);
+            }
+        }
+        logger.log(plan.access() == Access.SCAN ? Level.WARNING : Level.INFO, text.toString());
+    }
+
+    /**
+     * plan of statement with its parameters, asked on a reader connection of pool
+     */
+    private static Plan explain(String sql, List<Object> params) {
+        ArrayList<String> steps = new ArrayList<>();
+        Access access = Access.NONE;
+        try (PreparedStatement statement = DBConnection.prepareStatment("explain query plan " + sql)) {
+            int count = statement.getParameterMetaData().getParameterCount();
+            for (int i = 0; i < count; i++) {
+                statement.setObject(i + 1, i < params.size() ? params.get(i) : null);
+            }
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                String detail = result.getString("detail");
+                steps.add(detail);
+                String upper = detail.toUpperCase(Locale.ROOT);
+                if (upper.startsWith("SCAN"))
+                    access = Access.SCAN;
+                else if (upper.startsWith("SEARCH") && access == Access.NONE)
+                    access = Access.SEARCH;
+            }
+            result.close();
+        } catch (SQLException e) {
+            steps.add("no plan: " + e.getMessage()); // pragma and schema statements have no plan
+        }
+        return new Plan(access, steps);
+    }
+
+    private static String params(List<Object> params) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            String text = param instanceof String ? "'" + param + "'" : String.valueOf(param);
+            if (text.length() > MAX_PARAM_LENGTH)
+                text = text.substring(0, MAX_PARAM_LENGTH) + "...";
+            builder.append(i == 0 ? "" : ", ").append(text);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * add rotating file handler, entries do not go to console
+     */
+    private static void open() {
+        logger.setUseParentHandlers(false);
+        try {
+            FileHandler handler = new FileHandler(DBConfig.setting("slowQuery.file", "slow-queries.%g.log"),
+                    Integer.parseInt(DBConfig.setting("slowQuery.limit", "10485760")),
+                    Integer.parseInt(DBConfig.setting("slowQuery.files", "5")), true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return record.getMessage() + System.lineSeparator();
+                }
+            });
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            System.err.println("slow query log: " + e.getMessage());
+        }
+    }
+}
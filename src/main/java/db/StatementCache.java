@@ -0,0 +1,133 @@
+package db;
+
+import db.jfr.CacheEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * least recently used cache of compiled statements of one connection keyed by sql text.
+ * a statement is taken out of cache while it is in use so it is never shared
+ */
+public class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity)
+                    return false;
+                evictions.incrementAndGet();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * take compiled statement of sql from cache or compile a new one
+     *
+     * @param SQL sql text
+     * @return statement ready to bind
+     */
+    synchronized PreparedStatement take(String SQL) throws SQLException {
+        CacheEvent event = CacheEvent.start();
+        PreparedStatement statement = statements.remove(SQL);
+        CacheEvent.end(event, "statements", SQL, statement != null);
+        if (statement != null) {
+            hits.incrementAndGet();
+            return statement;
+        }
+        misses.incrementAndGet();
+        return connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    /**
+     * give statement back to cache after use
+     *
+     * @param SQL       sql text of statement
+     * @param statement statement taken by {@link #take(String)}
+     */
+    synchronized void give(String SQL, PreparedStatement statement) {
+        if (capacity <= 0) {
+            closeQuietly(statement);
+            return;
+        }
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            closeQuietly(statement); // statement is broken, compile it again next time
+            return;
+        }
+        PreparedStatement previous = statements.put(SQL, statement);
+        if (previous != null && previous != statement)
+            closeQuietly(previous); // same sql was in use twice at the same time
+    }
+
+    /**
+     * close all cached statements
+     */
+    synchronized void clear() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * statement cache metrics summed over all connections
+     *
+     * @param size      cached statements
+     * @param hits      statements served from cache
+     * @param misses    statements compiled
+     * @param evictions statements closed to make room
+     */
+    public record Stats(int size, long hits, long misses, long evictions) {
+        /**
+         * share of statements served from cache
+         *
+         * @return hit ratio between 0 and 1
+         */
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package db.cache;
+
+import db.jfr.CacheEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * bounded thread safe map of loaded objects by id and by name, least recently used objects are evicted first
+ *
+ * @param <T> cached model type
+ */
+public class IdentityMap<T> {
+    private static final List<IdentityMap<?>> all = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final int capacity;
+    private final ToIntFunction<T> idOf;
+    private final Function<T, String> nameOf;
+    private final LinkedHashMap<Integer, T> byId;
+    private final HashMap<String, Integer> idByName = new HashMap<>();
+    private final HashMap<Integer, String> nameById = new HashMap<>(); // name at the time object was cached
+
+    private long hits, misses, evictions;
+
+    /**
+     * create map and register it so {@link #clearAll()} clears it
+     *
+     * @param name     name of map in stats
+     * @param capacity max count of cached objects
+     * @param idOf     id of object
+     * @param nameOf   unique name of object
+     */
+    public IdentityMap(String name, int capacity, ToIntFunction<T> idOf, Function<T, String> nameOf) {
+        this.name = name;
+        this.capacity = capacity;
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                if (size() <= IdentityMap.this.capacity)
+                    return false;
+                evictions++;
+                idByName.remove(nameById.remove(eldest.getKey()));
+                return true;
+            }
+        };
+        all.add(this);
+    }
+
+    /**
+     * get cached object by id
+     *
+     * @param id object id
+     * @return cached object or null
+     */
+    public T get(int id) {
+        CacheEvent event = CacheEvent.start();
+        T value;
+        synchronized (this) {
+            value = byId.get(id);
+            count(value);
+        }
+        CacheEvent.end(event, name, id, value != null);
+        return value;
+    }
+
+    /**
+     * get cached object by name
+     *
+     * @param name object name
+     * @return cached object or null
+     */
+    public T get(String name) {
+        CacheEvent event = CacheEvent.start();
+        T value;
+        synchronized (this) {
+            Integer id = idByName.get(name);
+            value = id == null ? null : byId.get(id);
+            count(value);
+        }
+        CacheEvent.end(event, this.name, name, value != null);
+        return value;
+    }
+
+    private void count(T value) {
+        if (value == null)
+            misses++;
+        else
+            hits++;
+    }
+
+    /**
+     * cache object or refresh its name after an update
+     *
+     * @param value saved or loaded object with id
+     */
+    public synchronized void put(T value) {
+        int id = idOf.applyAsInt(value);
+        if (id <= 0)
+            return;
+        String name = nameOf.apply(value);
+        String previousName = nameById.put(id, name);
+        if (previousName != null && !previousName.equals(name))
+            idByName.remove(previousName);
+        idByName.put(name, id);
+        byId.put(id, value);
+    }
+
+    /**
+     * remove object with given id from cache
+     *
+     * @param id object id
+     */
+    public synchronized void remove(int id) {
+        byId.remove(id);
+        idByName.remove(nameById.remove(id));
+    }
+
+    /**
+     * remove all cached objects
+     */
+    public synchronized void clear() {
+        byId.clear();
+        idByName.clear();
+        nameById.clear();
+    }
+
+    /**
+     * clear all identity maps, used when database changes outside of models (purge, rollback)
+     */
+    public static void clearAll() {
+        all.forEach(IdentityMap::clear);
+    }
+
+    /**
+     * metrics of this map
+     *
+     * @return stats snapshot
+     */
+    public synchronized Stats stats() {
+        return new Stats(name, byId.size(), capacity, hits, misses, evictions);
+    }
+
+    /**
+     * metrics of all identity maps
+     *
+     * @return stats snapshot of every map
+     */
+    public static List<Stats> allStats() {
+        ArrayList<Stats> stats = new ArrayList<>();
+        all.forEach((map) -> stats.add(map.stats()));
+        return stats;
+    }
+
+    /**
+     * identity map metrics
+     *
+     * @param name      name of map
+     * @param size      cached objects
+     * @param capacity  max cached objects
+     * @param hits      lookups served from map
+     * @param misses    lookups that went to database
+     * @param evictions objects removed to make room
+     */
+    public record Stats(String name, int size, int capacity, long hits, long misses, long evictions) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
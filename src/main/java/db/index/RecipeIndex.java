@@ -0,0 +1,315 @@
+package db.index;
+
+import db.DBConnection;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * in memory inverted index of link tables, category id and ingredient id to compressed bitmap of recipe ids.
+ * built once from database and kept in sync by models after their writes are committed
+ */
+public abstract class RecipeIndex {
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static HashMap<Integer, RoaringBitmap> byCategory = new HashMap<>();
+    private static HashMap<Integer, RoaringBitmap> byIngredient = new HashMap<>();
+    private static RoaringBitmap recipes = new RoaringBitmap();
+    private static volatile boolean built = false;
+
+    /**
+     * load index from recipes and link tables, replaces current index. runs while holding writer connection
+     * so no write commits between reading tables and swapping bitmaps, changes committed before are in the
+     * tables and their after commit updates are repeated on new bitmaps without effect
+     */
+    public static void build() {
+        try {
+            DBConnection.inTransaction(() -> {
+                HashMap<Integer, RoaringBitmap> categories = load("select category_id,recipe_id from recipes_categories order by category_id");
+                HashMap<Integer, RoaringBitmap> ingredients = load("select ingredient_id,recipe_id from recipes_ingredients order by ingredient_id");
+                RoaringBitmap all = new RoaringBitmap();
+                try (PreparedStatement statement = DBConnection.prepareStatment("select id from recipes")) {
+                    ResultSet result = statement.executeQuery();
+                    while (result.next()) {
+                        all.add(result.getInt(1));
+                    }
+                    result.close();
+                }
+                all.runOptimize();
+                lock.writeLock().lock();
+                try {
+                    byCategory = categories;
+                    byIngredient = ingredients;
+                    recipes = all;
+                    built = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * read (key, recipe id) rows into bitmaps per key
+     */
+    private static HashMap<Integer, RoaringBitmap> load(String SQL) throws SQLException {
+        HashMap<Integer, RoaringBitmap> bitmaps = new HashMap<>();
+        try (PreparedStatement statement = DBConnection.prepareStatment(SQL)) {
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                bitmaps.computeIfAbsent(result.getInt(1), (key) -> new RoaringBitmap()).add(result.getInt(2));
+            }
+            result.close();
+        }
+        bitmaps.values().forEach(RoaringBitmap::runOptimize);
+        return bitmaps;
+    }
+
+    /**
+     * drop index, lookups fall back to database until it is built again
+     */
+    public static void clear() {
+        lock.writeLock().lock();
+        try {
+            byCategory = new HashMap<>();
+            byIngredient = new HashMap<>();
+            recipes = new RoaringBitmap();
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * check if index is built and can answer lookups
+     *
+     * @return true if built
+     */
+    public static boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * add links of a committed recipe
+     *
+     * @param recipeId      recipe id
+     * @param categoryIds   linked categories
+     * @param ingredientIds linked ingredients
+     */
+    public static void link(int recipeId, Collection<Integer> categoryIds, Collection<Integer> ingredientIds) {
+        if (!built)
+            return;
+        lock.writeLock().lock();
+        try {
+            recipes.add(recipeId);
+            categoryIds.forEach((id) -> byCategory.computeIfAbsent(id, (key) -> new RoaringBitmap()).add(recipeId));
+            ingredientIds.forEach((id) -> byIngredient.computeIfAbsent(id, (key) -> new RoaringBitmap()).add(recipeId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove a deleted recipe from all bitmaps
+     *
+     * @param recipeId recipe id
+     */
+    public static void removeRecipe(int recipeId) {
+        if (!built)
+            return;
+        lock.writeLock().lock();
+        try {
+            recipes.remove(recipeId);
+            byCategory.values().forEach((bitmap) -> bitmap.remove(recipeId));
+            byIngredient.values().forEach((bitmap) -> bitmap.remove(recipeId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * replace links of an updated recipe
+     *
+     * @param recipeId      recipe id
+     * @param categoryIds   all linked categories
+     * @param ingredientIds all linked ingredients
+     */
+    public static void replace(int recipeId, Collection<Integer> categoryIds, Collection<Integer> ingredientIds) {
+        if (!built)
+            return;
+        lock.writeLock().lock(); // reentrant, both steps are seen as one change
+        try {
+            removeRecipe(recipeId);
+            link(recipeId, categoryIds, ingredientIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove a deleted category
+     *
+     * @param categoryId category id
+     */
+    public static void removeCategory(int categoryId) {
+        if (!built)
+            return;
+        lock.writeLock().lock();
+        try {
+            byCategory.remove(categoryId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * count of recipes that have a category
+     *
+     * @param categoryId category id
+     * @return count of recipes
+     */
+    public static int countCategory(int categoryId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap bitmap = byCategory.get(categoryId);
+            return bitmap == null ? 0 : bitmap.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * start a lookup, all conditions of lookup must hold
+     *
+     * @return empty query that matches all recipes
+     */
+    public static Query query() {
+        return new Query();
+    }
+
+    /**
+     * bitmap lookup combining category and ingredient conditions with and
+     */
+    public static class Query {
+        private final ArrayList<Term> categories = new ArrayList<>();
+        private final ArrayList<Term> ingredients = new ArrayList<>();
+
+        private enum Condition {ALL, ANY, NONE}
+
+        private record Term(int[] ids, Condition condition) {
+        }
+
+        private Query() {
+        }
+
+        public Query allCategories(int... ids) {
+            categories.add(new Term(ids, Condition.ALL));
+            return this;
+        }
+
+        public Query anyCategories(int... ids) {
+            categories.add(new Term(ids, Condition.ANY));
+            return this;
+        }
+
+        public Query noCategories(int... ids) {
+            categories.add(new Term(ids, Condition.NONE));
+            return this;
+        }
+
+        public Query allIngredients(int... ids) {
+            ingredients.add(new Term(ids, Condition.ALL));
+            return this;
+        }
+
+        public Query anyIngredients(int... ids) {
+            ingredients.add(new Term(ids, Condition.ANY));
+            return this;
+        }
+
+        public Query noIngredients(int... ids) {
+            ingredients.add(new Term(ids, Condition.NONE));
+            return this;
+        }
+
+        /**
+         * run lookup on index
+         *
+         * @return bitmap of matching recipe ids
+         */
+        public RoaringBitmap bitmap() {
+            lock.readLock().lock();
+            try {
+                RoaringBitmap result = recipes.clone();
+                categories.forEach((term) -> apply(result, byCategory, term.ids(), term.condition()));
+                ingredients.forEach((term) -> apply(result, byIngredient, term.ids(), term.condition()));
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * run lookup on index
+         *
+         * @return matching recipe ids in ascending order
+         */
+        public int[] ids() {
+            return bitmap().toArray();
+        }
+
+        /**
+         * run lookup on index for one page of ids
+         *
+         * @param afterId page starts after this id, 0 for first page
+         * @param limit   max count of ids
+         * @return matching recipe ids greater than afterId in ascending order
+         */
+        public int[] ids(int afterId, int limit) {
+            PeekableIntIterator iterator = bitmap().getIntIterator();
+            iterator.advanceIfNeeded(Math.max(0, afterId) + 1); // unsigned, after largest id nothing is left
+            int[] ids = new int[limit];
+            int count = 0;
+            while (count < limit && iterator.hasNext()) {
+                ids[count++] = iterator.next();
+            }
+            return Arrays.copyOf(ids, count);
+        }
+
+        private static void apply(RoaringBitmap result, HashMap<Integer, RoaringBitmap> bitmaps, int[] ids, Condition condition) {
+            switch (condition) {
+                case ALL -> {
+                    for (int id : ids) {
+                        result.and(bitmaps.getOrDefault(id, new RoaringBitmap()));
+                    }
+                }
+                case ANY -> {
+                    RoaringBitmap any = new RoaringBitmap();
+                    for (int id : ids) {
+                        RoaringBitmap bitmap = bitmaps.get(id);
+                        if (bitmap != null)
+                            any.or(bitmap);
+                    }
+                    result.and(any);
+                }
+                case NONE -> {
+                    for (int id : ids) {
+                        RoaringBitmap bitmap = bitmaps.get(id);
+                        if (bitmap != null)
+                            result.andNot(bitmap);
+                    }
+                }
+            }
+        }
+    }
+}
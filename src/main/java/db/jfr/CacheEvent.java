@@ -0,0 +1,60 @@
+package db.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * flight recorder event of a lookup in a cache, identity maps of models or compiled statements of a connection
+ */
+@Name("recipe.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Recipe Organizer", "Cache"})
+@Description("Lookup in an identity map or statement cache")
+@StackTrace(false)
+public class CacheEvent extends Event {
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+
+    /**
+     * begin event when it is recorded
+     *
+     * @return started event or null when recording of event is off
+     */
+    public static CacheEvent start() {
+        CacheEvent event = new CacheEvent();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end and commit a started event
+     *
+     * @param event event of {@link #start()}, may be null
+     * @param cache name of cache
+     * @param key   looked up key
+     * @param hit   true if key was found
+     */
+    public static void end(CacheEvent event, String cache, Object key, boolean hit) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.key = String.valueOf(key);
+            event.hit = hit;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package db.jfr;
+
+import db.models.Model;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * flight recorder event of save, update or delete of a model, with its statements and links
+ */
+@Name("recipe.ModelWrite")
+@Label("Model Write")
+@Category({"Recipe Organizer", "Database"})
+@Description("Save, update or delete of a recipe, category or ingredient")
+public class ModelWriteEvent extends Event {
+    @Label("Model")
+    public String model;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Id")
+    public int id;
+
+    /**
+     * begin event when it is recorded
+     *
+     * @return started event or null when recording of event is off
+     */
+    public static ModelWriteEvent start() {
+        ModelWriteEvent event = new ModelWriteEvent();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end and commit a started event
+     *
+     * @param event     event of {@link #start()}, may be null
+     * @param model     written model
+     * @param operation save, update or delete
+     */
+    public static void end(ModelWriteEvent event, Model model, String operation) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.model = model.getClass().getSimpleName();
+            event.operation = operation;
+            event.id = model.getId();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package db.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * flight recorder event of a statement executed through DBConnection. event lasts from execution until its
+ * result set is closed, database time is the part of it spent in sqlite
+ */
+@Name("recipe.Query")
+@Label("Query")
+@Category({"Recipe Organizer", "Database"})
+@Description("Statement executed through DBConnection")
+@StackTrace(false)
+public class QueryEvent extends Event {
+    @Label("SQL")
+    @Description("Shape of statement, literals replaced by ?")
+    public String sql;
+
+    @Label("Rows")
+    @Description("Rows returned by a query or changed by an update")
+    public long rows;
+
+    @Label("Database Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long databaseTime;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /**
+     * begin event when it is recorded
+     *
+     * @return started event or null when recording of event is off
+     */
+    public static QueryEvent start() {
+        QueryEvent event = new QueryEvent();
+        if (!event.isEnabled())
+            return null;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,11 @@
+package db.migrations;
+
+/**
+ * one step of database schema, statements of a step run in one transaction
+ *
+ * @param version     schema version after this step, steps run in ascending version order
+ * @param description short description stored in schema_version table
+ * @param statements  sql statements of step
+ */
+public record Migration(int version, String description, String... statements) {
+}
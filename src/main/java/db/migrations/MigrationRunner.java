@@ -0,0 +1,99 @@
+package db.migrations;
+
+import db.DBConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * brings database schema to latest version by running steps that are not applied yet
+ */
+public final class MigrationRunner {
+    private MigrationRunner() {
+    }
+
+    /**
+     * run all steps of {@link Migrations#ALL} that are newer than database version.
+     * when database is already on latest version only one query is run
+     *
+     * @return count of applied steps
+     */
+    public static int migrate() throws SQLException {
+        return migrate(Migrations.ALL);
+    }
+
+    /**
+     * run given steps that are newer than database version, each step in its own transaction
+     *
+     * @param migrations steps in ascending version order
+     * @return count of applied steps
+     */
+    public static int migrate(List<Migration> migrations) throws SQLException {
+        int current = currentVersion();
+        if (current >= migrations.get(migrations.size() - 1).version())
+            return 0; // schema is current, skip all ddl
+
+        if (current == 0)
+            createVersionTable();
+
+        int applied = 0;
+        for (Migration migration : migrations) {
+            if (migration.version() <= current)
+                continue;
+            apply(migration);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * get version of database schema
+     *
+     * @return latest applied version or 0 for a database without schema_version table
+     * @throws SQLException if version could not be read, like a locked database or a pool timeout
+     */
+    public static int currentVersion() throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select max(version) from schema_version")) {
+            ResultSet result = statement.executeQuery();
+            int version = result.next() ? result.getInt(1) : 0;
+            result.close();
+            return version;
+        } catch (SQLException e) {
+            if (e.getMessage() != null && e.getMessage().contains("no such table: schema_version"))
+                return 0; // no schema_version table yet
+            throw e; // any other failure must not look like an empty database
+        }
+    }
+
+    private static void createVersionTable() throws SQLException {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("create table if not exists schema_version(version integer not null constraint schema_version_pk primary key,description TEXT not null,applied_at TEXT not null default current_timestamp);");
+        }
+    }
+
+    /**
+     * run statements of step and record its version in one transaction
+     */
+    private static void apply(Migration migration) throws SQLException {
+        try {
+            DBConnection.inTransaction(() -> {
+                try (Statement statement = DBConnection.getStatment()) {
+                    for (String SQL : migration.statements()) {
+                        statement.execute(SQL);
+                    }
+                }
+                try (PreparedStatement statement = DBConnection.prepareStatment("insert into schema_version (version,description) values(?,?)")) {
+                    statement.setInt(1, migration.version());
+                    statement.setString(2, migration.description());
+                    statement.executeUpdate();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new SQLException("migration " + migration.version() + " (" + migration.description() + ") failed: " + e.getMessage(), e);
+        }
+    }
+}
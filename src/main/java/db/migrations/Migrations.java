@@ -0,0 +1,57 @@
+package db.migrations;
+
+import java.util.List;
+
+/**
+ * all schema steps of application in order, new steps are only appended to the end of list
+ */
+public final class Migrations {
+    private Migrations() {
+    }
+
+    /**
+     * trigger that adds new recipes to full text index, bulk imports drop it while they run and rebuild the index once at end
+     */
+    public static final String FTS_INSERT_TRIGGER = "create trigger if not exists recipes_fts_after_insert after insert on recipes begin insert into recipes_fts(docid,name,instructions) values(new.id,new.name,new.instructions); end;";
+
+    public static final List<Migration> ALL = List.of(
+            new Migration(1, "create tables",
+                    "create table if not exists categories(id integer not null constraint categories_pk primary key autoincrement,name TEXT not null unique);",
+                    "create table if not exists ingredients(id integer not null constraint ingredients_pk primary key autoincrement,name TEXT not null unique);",
+                    "create table if not exists recipes(id integer not null constraint recipes_pk primary key autoincrement,name TEXT not null,instructions TEXT not null);",
+                    "create table if not exists recipes_ingredients(recipe_id integer not null constraint recipes references recipes,ingredient_id integer not null constraint ingredients references ingredients);",
+                    "create table if not exists recipes_categories(recipe_id integer not null constraint recipes references recipes,category_id integer not null constraint categories references categories);"
+            ),
+            new Migration(2, "unique and covering indexes on link tables",
+                    // keep first row of each duplicate link so unique indexes can be created
+                    "delete from recipes_categories where rowid not in (select min(rowid) from recipes_categories group by recipe_id,category_id);",
+                    "delete from recipes_ingredients where rowid not in (select min(rowid) from recipes_ingredients group by recipe_id,ingredient_id);",
+                    "create unique index if not exists recipes_categories_recipe_category_uindex on recipes_categories (recipe_id,category_id);",
+                    "create index if not exists recipes_categories_category_recipe_index on recipes_categories (category_id,recipe_id);",
+                    "create unique index if not exists recipes_ingredients_recipe_ingredient_uindex on recipes_ingredients (recipe_id,ingredient_id);",
+                    "create index if not exists recipes_ingredients_ingredient_recipe_index on recipes_ingredients (ingredient_id,recipe_id);"
+            ),
+            new Migration(3, "full text index on recipes name and instructions",
+                    // external content table, text is stored once in recipes and only the index is kept here
+                    "create virtual table if not exists recipes_fts using fts4(content=\"recipes\",name,instructions);",
+                    "insert into recipes_fts(recipes_fts) values('rebuild');",
+                    "create trigger if not exists recipes_fts_before_update before update on recipes begin delete from recipes_fts where docid=old.id; end;",
+                    "create trigger if not exists recipes_fts_before_delete before delete on recipes begin delete from recipes_fts where docid=old.id; end;",
+                    "create trigger if not exists recipes_fts_after_update after update on recipes begin insert into recipes_fts(docid,name,instructions) values(new.id,new.name,new.instructions); end;",
+                    FTS_INSERT_TRIGGER
+            ),
+            new Migration(4, "progress of bulk imports",
+                    // one row per imported file, position is count of records read from file in committed batches
+                    "create table if not exists import_progress(source TEXT not null constraint import_progress_pk primary key,size integer not null,position integer not null,imported integer not null,done integer not null default 0);"
+            )
+    );
+
+    /**
+     * version of database after all steps
+     *
+     * @return latest schema version
+     */
+    public static int latestVersion() {
+        return ALL.get(ALL.size() - 1).version();
+    }
+}
@@ -1,17 +1,27 @@
 package db.models;
 
+import db.DBConfig;
 import db.DBConnection;
+import db.KeysetPager;
+import db.cache.IdentityMap;
+import db.index.RecipeIndex;
+import db.jfr.ModelWriteEvent;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 public class Category implements Model {
     private int id;
     private String name;
     private static final String table = "categories";
+    private static final IdentityMap<Category> cache = new IdentityMap<>(table, Integer.parseInt(DBConfig.setting("cache.size", "10000")), Category::getId, Category::getName);
 
     public Category(int id, String name) {
         this.id = id;
@@ -38,26 +48,48 @@ public class Category implements Model {
         this.id = id;
     }
 
+    /**
+     * copy of this category, identity map only holds copies so a changed name is not seen before update
+     */
+    private Category copy() {
+        return new Category(id, name);
+    }
+
+    /**
+     * cache a copy of category once current transaction is committed, rows of a rolled back transaction never reach cache
+     */
+    private static void cacheAfterCommit(Category category) {
+        Category copy = category.copy();
+        DBConnection.afterCommit(() -> cache.put(copy));
+    }
+
     /**
      * save category to database
      */
     @Override
     public void save() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String createSQL = "insert into " + table + " (name) values(?);";
-            PreparedStatement statement = DBConnection.prepareStatment(createSQL);
-            statement.setString(1, getName());
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows > 0) {
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int lastInsertedId = generatedKeys.getInt(1);
-                    setId(lastInsertedId);
+            DBConnection.inTransaction(() -> {
+                String createSQL = "insert into " + table + " (name) values(?);";
+                try (PreparedStatement statement = DBConnection.prepareStatment(createSQL)) {
+                    statement.setString(1, getName());
+                    int affectedRows = statement.executeUpdate();
+                    if (affectedRows > 0) {
+                        ResultSet generatedKeys = statement.getGeneratedKeys();
+                        if (generatedKeys.next()) {
+                            int lastInsertedId = generatedKeys.getInt(1);
+                            setId(lastInsertedId);
+                            cacheAfterCommit(this);
+                        }
+                    }
                 }
-            }
-            statement.close();
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "save");
         }
     }
 
@@ -66,15 +98,23 @@ public class Category implements Model {
      */
     @Override
     public void update() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String updateSQL = "update " + table + " set name=? where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(updateSQL);
-            statement.setString(1, getName());
-            statement.setInt(2, getId());
-            statement.executeUpdate();
-            statement.close();
+            DBConnection.inTransaction(() -> {
+                String updateSQL = "update " + table + " set name=? where id=?";
+                try (PreparedStatement statement = DBConnection.prepareStatment(updateSQL)) {
+                    statement.setString(1, getName());
+                    statement.setInt(2, getId());
+                    statement.executeUpdate();
+                }
+                cacheAfterCommit(this); // cache new name of this id
+                return null;
+            });
         } catch (SQLException e) {
+            cache.remove(getId());
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "update");
         }
     }
 
@@ -83,31 +123,37 @@ public class Category implements Model {
      */
     @Override
     public void delete() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String deleteSQL = "delete from " + table + " where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(deleteSQL);
-            statement.setInt(1, getId());
-            statement.executeUpdate();
-            statement.close();
-
-            unlinkRecipes();
+            DBConnection.inTransaction(() -> { // category and its links are deleted together
+                String deleteSQL = "delete from " + table + " where id=?";
+                try (PreparedStatement statement = DBConnection.prepareStatment(deleteSQL)) {
+                    statement.setInt(1, getId());
+                    statement.executeUpdate();
+                }
+                unlinkRecipes();
+                int categoryId = getId();
+                DBConnection.afterCommit(() -> {
+                    cache.remove(categoryId);
+                    RecipeIndex.removeCategory(categoryId);
+                });
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "delete");
         }
     }
 
     /**
      * unlink recipes of category
      */
-    private void unlinkRecipes() {
-        try {
-            String deleteSQL = "delete from recipes_categories where category_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(deleteSQL);
+    private void unlinkRecipes() throws SQLException {
+        String deleteSQL = "delete from recipes_categories where category_id=?";
+        try (PreparedStatement statement = DBConnection.prepareStatment(deleteSQL)) {
             statement.setInt(1, getId());
             statement.executeUpdate();
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
         }
     }
 
@@ -119,39 +165,76 @@ public class Category implements Model {
         ArrayList<Category> categories = new ArrayList<>();
         try {
             String getSQL = "select * from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(getSQL);
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                categories.add(new Category(id, name));
+            try (PreparedStatement statement = DBConnection.prepareStatment(getSQL)) {
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    String name = resultSet.getString("name");
+                    categories.add(new Category(id, name));
+                }
+                resultSet.close();
             }
-            resultSet.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
         return categories;
     }
 
+    /**
+     * get page of categories in id order
+     * @param afterId page starts after this id, 0 for first page
+     * @param limit max count of categories in page
+     * @return ArrayList of Category objects
+     */
+    public static ArrayList<Category> page(int afterId, int limit) {
+        ArrayList<Category> categories = new ArrayList<>();
+        try {
+            String pageSQL = "select id,name from " + table + " where id>? order by id limit ?";
+            try (PreparedStatement statement = DBConnection.prepareStatment(pageSQL)) {
+                statement.setInt(1, afterId);
+                statement.setInt(2, limit);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    categories.add(new Category(resultSet.getInt("id"), resultSet.getString("name")));
+                }
+                resultSet.close();
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+        return categories;
+    }
+
+    /**
+     * stream all categories in id order loading one page at a time, memory use does not grow with table size
+     * @param pageSize categories per page
+     * @return lazy Stream of Category objects
+     */
+    public static Stream<Category> stream(int pageSize) {
+        return KeysetPager.stream(Category::page, Category::getId, pageSize);
+    }
+
     /**
      * find category by id
      * @param id category id
      * @return Category or null
      */
     public static Category find(int id) {
-        Category category = null;
+        Category category = cache.get(id);
+        if (category != null)
+            return category.copy(); // callers may change their object without update
         try {
             String getCategorySQL = "select * from " + table + " where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getCategorySQL);
-            statement.setInt(1, id);
-            ResultSet categoryResult = statement.executeQuery();
-            while (categoryResult.next()) {
-                String name = categoryResult.getString("name");
-                category = new Category(id, name);
+            try (PreparedStatement statement = DBConnection.prepareStatment(getCategorySQL)) {
+                statement.setInt(1, id);
+                ResultSet categoryResult = statement.executeQuery();
+                while (categoryResult.next()) {
+                    String name = categoryResult.getString("name");
+                    category = new Category(id, name);
+                    cacheAfterCommit(category);
+                }
+                categoryResult.close();
             }
-            categoryResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -164,18 +247,21 @@ public class Category implements Model {
      * @return Category or null
      */
     public static Category find(String name) {
-        Category category = null;
+        Category category = cache.get(name);
+        if (category != null)
+            return category.copy();
         try {
             String getCategorySQL = "select * from " + table + " where name=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getCategorySQL);
-            statement.setString(1, name);
-            ResultSet categoryResult = statement.executeQuery();
-            while (categoryResult.next()) {
-                int id = categoryResult.getInt("id");
-                category = new Category(id, name);
+            try (PreparedStatement statement = DBConnection.prepareStatment(getCategorySQL)) {
+                statement.setString(1, name);
+                ResultSet categoryResult = statement.executeQuery();
+                while (categoryResult.next()) {
+                    int id = categoryResult.getInt("id");
+                    category = new Category(id, name);
+                    cacheAfterCommit(category);
+                }
+                categoryResult.close();
             }
-            categoryResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -190,6 +276,36 @@ public class Category implements Model {
         return find(name) != null;
     }
 
+    /**
+     * set ids of given categories from database, categories that are not exist are created in one batch
+     *
+     * @param categories categories to resolve
+     */
+    static void resolve(Collection<Category> categories) throws SQLException {
+        ArrayList<Category> uncached = new ArrayList<>();
+        for (Category category : categories) {
+            Category cached = cache.get(category.getName());
+            if (cached != null)
+                category.setId(cached.getId());
+            else
+                uncached.add(category);
+        }
+        HashMap<String, Integer> ids = Names.resolve(table, uncached.stream().map(Category::getName).toList());
+        for (Category category : uncached) {
+            category.setId(ids.get(category.getName()));
+            cacheAfterCommit(category);
+        }
+    }
+
+    /**
+     * metrics of categories identity map
+     *
+     * @return cache stats
+     */
+    public static IdentityMap.Stats cacheStats() {
+        return cache.stats();
+    }
+
     /**
      * get all recipes of this category
      * @return ArrayList of Recipe objects
@@ -204,26 +320,25 @@ public class Category implements Model {
      * @return ArrayList of Recipe objects
      */
     public static ArrayList<Recipe> getCategoryRecipes(int ...categoryId) {
-        ArrayList<Recipe> recipes = new ArrayList<>();
-        try {
-            String getRecipesIdsSQL = "select recipe_id from recipes_categories where category_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getRecipesIdsSQL);
-            for (int i : categoryId) {
-                statement.setInt(1, i);
-                ResultSet recipesIdsResult = statement.executeQuery();
-                while (recipesIdsResult.next()) {
-                    int recipeId = recipesIdsResult.getInt("recipe_id");
-                    Recipe recipe = Recipe.find(recipeId);
-                    if (!recipes.contains(recipe))
-                        recipes.add(recipe);
-                }
-                recipesIdsResult.close();
-            }
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
-        return recipes;
+        if (categoryId.length == 0)
+            return new ArrayList<>();
+        if (RecipeIndex.isBuilt())
+            return Recipe.findAll(RecipeIndex.query().anyCategories(categoryId).ids());
+        Object[] params = Arrays.stream(categoryId).boxed().toArray();
+        return Recipe.load("id in (select recipe_id from recipes_categories where category_id in " + DBConnection.placeholders(params.length) + ")", params);
+    }
+
+    /**
+     * get page of recipes that have given category in id order
+     * @param categoryId category id
+     * @param afterId page starts after this recipe id, 0 for first page
+     * @param limit max count of recipes in page
+     * @return ArrayList of Recipe objects ordered by id
+     */
+    public static ArrayList<Recipe> getCategoryRecipesPage(int categoryId, int afterId, int limit) {
+        if (RecipeIndex.isBuilt())
+            return Recipe.findAll(RecipeIndex.query().anyCategories(categoryId).ids(afterId, limit));
+        return Recipe.load("id in (select recipe_id from recipes_categories where category_id=? and recipe_id>? order by recipe_id limit ?)", categoryId, afterId, limit);
     }
 
     /**
@@ -234,10 +349,12 @@ public class Category implements Model {
         int count = 0;
         try {
             String countSQL = "select count(id) from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(countSQL);
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            count = resultSet.getInt(1);
+            try (PreparedStatement statement = DBConnection.prepareStatment(countSQL)) {
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+                count = resultSet.getInt(1);
+                resultSet.close();
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -258,14 +375,18 @@ public class Category implements Model {
      * @return count of recipes
      */
     public static int countCategoryRecipes(int categoryId) {
+        if (RecipeIndex.isBuilt())
+            return RecipeIndex.countCategory(categoryId);
         int count = 0;
         try {
             String countSQL = "select count(recipe_id) from recipes_categories where category_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(countSQL);
-            statement.setInt(1, categoryId);
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            count = resultSet.getInt(1);
+            try (PreparedStatement statement = DBConnection.prepareStatment(countSQL)) {
+                statement.setInt(1, categoryId);
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+                count = resultSet.getInt(1);
+                resultSet.close();
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
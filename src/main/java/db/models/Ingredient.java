@@ -1,17 +1,27 @@
 package db.models;
 
+import db.DBConfig;
 import db.DBConnection;
+import db.KeysetPager;
+import db.cache.IdentityMap;
+import db.index.RecipeIndex;
+import db.jfr.ModelWriteEvent;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 public class Ingredient implements Model {
     private int id;
     private String name;
     private static final String table = "ingredients";
+    private static final IdentityMap<Ingredient> cache = new IdentityMap<>(table, Integer.parseInt(DBConfig.setting("cache.size", "10000")), Ingredient::getId, Ingredient::getName);
 
     public Ingredient(int id, String name) {
         this.id = id;
@@ -34,27 +44,49 @@ public class Ingredient implements Model {
         this.id = id;
     }
 
+    /**
+     * copy of this ingredient, identity map only holds copies so a changed name is not seen before update
+     */
+    private Ingredient copy() {
+        return new Ingredient(id, name);
+    }
+
+    /**
+     * cache a copy of ingredient once current transaction is committed, rows of a rolled back transaction never reach cache
+     */
+    private static void cacheAfterCommit(Ingredient ingredient) {
+        Ingredient copy = ingredient.copy();
+        DBConnection.afterCommit(() -> cache.put(copy));
+    }
+
     public void setName(String name) {
         this.name = name;
     }
 
     @Override
     public void save() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String createSQL = "insert into " + table + " (name) values(?);";
-            PreparedStatement statement = DBConnection.prepareStatment(createSQL);
-            statement.setString(1, getName());
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows > 0) {
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int lastInsertedId = generatedKeys.getInt(1);
-                    setId(lastInsertedId);
+            DBConnection.inTransaction(() -> {
+                String createSQL = "insert into " + table + " (name) values(?);";
+                try (PreparedStatement statement = DBConnection.prepareStatment(createSQL)) {
+                    statement.setString(1, getName());
+                    int affectedRows = statement.executeUpdate();
+                    if (affectedRows > 0) {
+                        ResultSet generatedKeys = statement.getGeneratedKeys();
+                        if (generatedKeys.next()) {
+                            int lastInsertedId = generatedKeys.getInt(1);
+                            setId(lastInsertedId);
+                            cacheAfterCommit(this);
+                        }
+                    }
                 }
-            }
-            statement.close();
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "save");
         }
     }
 
@@ -64,36 +96,42 @@ public class Ingredient implements Model {
      * @return Ingredient
      */
     public static Ingredient find(int id) {
-        Ingredient ingredient = null;
+        Ingredient ingredient = cache.get(id);
+        if (ingredient != null)
+            return ingredient.copy(); // callers may change their object without update
         try {
             String getIngredientSQL = "select * from " + table + " where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getIngredientSQL);
-            statement.setInt(1, id);
-            ResultSet ingredientResult = statement.executeQuery();
-            while (ingredientResult.next()) {
-                String name = ingredientResult.getString("name");
-                ingredient = new Ingredient(id, name);
+            try (PreparedStatement statement = DBConnection.prepareStatment(getIngredientSQL)) {
+                statement.setInt(1, id);
+                ResultSet ingredientResult = statement.executeQuery();
+                while (ingredientResult.next()) {
+                    String name = ingredientResult.getString("name");
+                    ingredient = new Ingredient(id, name);
+                    cacheAfterCommit(ingredient);
+                }
+                ingredientResult.close();
             }
-            ingredientResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
         return ingredient;
     }
     public static Ingredient find(String name) {
-        Ingredient ingredient = null;
+        Ingredient ingredient = cache.get(name);
+        if (ingredient != null)
+            return ingredient.copy();
         try {
             String getIngredientSQL = "select * from " + table + " where name=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getIngredientSQL);
-            statement.setString(1, name);
-            ResultSet ingredientResult = statement.executeQuery();
-            while (ingredientResult.next()) {
-                int id = ingredientResult.getInt("id");
-                ingredient = new Ingredient(id, name);
+            try (PreparedStatement statement = DBConnection.prepareStatment(getIngredientSQL)) {
+                statement.setString(1, name);
+                ResultSet ingredientResult = statement.executeQuery();
+                while (ingredientResult.next()) {
+                    int id = ingredientResult.getInt("id");
+                    ingredient = new Ingredient(id, name);
+                    cacheAfterCommit(ingredient);
+                }
+                ingredientResult.close();
             }
-            ingredientResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -113,20 +151,58 @@ public class Ingredient implements Model {
         return find(name) != null;
     }
 
+    /**
+     * set ids of given ingredients from database, ingredients that are not exist are created in one batch
+     *
+     * @param ingredients ingredients to resolve
+     */
+    static void resolve(Collection<Ingredient> ingredients) throws SQLException {
+        ArrayList<Ingredient> uncached = new ArrayList<>();
+        for (Ingredient ingredient : ingredients) {
+            Ingredient cached = cache.get(ingredient.getName());
+            if (cached != null)
+                ingredient.setId(cached.getId());
+            else
+                uncached.add(ingredient);
+        }
+        HashMap<String, Integer> ids = Names.resolve(table, uncached.stream().map(Ingredient::getName).toList());
+        for (Ingredient ingredient : uncached) {
+            ingredient.setId(ids.get(ingredient.getName()));
+            cacheAfterCommit(ingredient);
+        }
+    }
+
+    /**
+     * metrics of ingredients identity map
+     *
+     * @return cache stats
+     */
+    public static IdentityMap.Stats cacheStats() {
+        return cache.stats();
+    }
+
     /**
      * update the ingredient in database
      */
     @Override
     public void update() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String updateSQL = "update " + table + " set name=? where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(updateSQL);
-            statement.setString(1, getName());
-            statement.setInt(2, getId());
-            statement.executeUpdate();
-            statement.close();
+            DBConnection.inTransaction(() -> {
+                String updateSQL = "update " + table + " set name=? where id=?";
+                try (PreparedStatement statement = DBConnection.prepareStatment(updateSQL)) {
+                    statement.setString(1, getName());
+                    statement.setInt(2, getId());
+                    statement.executeUpdate();
+                }
+                cacheAfterCommit(this); // cache new name of this id
+                return null;
+            });
         } catch (SQLException e) {
+            cache.remove(getId());
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "update");
         }
     }
 
@@ -151,15 +227,15 @@ public class Ingredient implements Model {
         ArrayList<Ingredient> ingredients = new ArrayList<>();
         try {
             String getSQL = "select * from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(getSQL);
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                ingredients.add(new Ingredient(id, name));
+            try (PreparedStatement statement = DBConnection.prepareStatment(getSQL)) {
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    String name = resultSet.getString("name");
+                    ingredients.add(new Ingredient(id, name));
+                }
+                resultSet.close();
             }
-            resultSet.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -167,31 +243,64 @@ public class Ingredient implements Model {
     }
 
     /**
-     * return all recipes that has this ingredient based on ingredient id
-     * @param ingredientId ingredient id
-     * @return ArrayList of Recipes
+     * get page of ingredients in id order
+     * @param afterId page starts after this id, 0 for first page
+     * @param limit max count of ingredients in page
+     * @return ArrayList of Ingredient objects
      */
-    public static ArrayList<Recipe> getIngredientRecipes(int ...ingredientId) {
-        ArrayList<Recipe> recipes = new ArrayList<>();
+    public static ArrayList<Ingredient> page(int afterId, int limit) {
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
         try {
-            String getRecipesIdsSQL = "select recipe_id from recipes_ingredients where ingredient_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getRecipesIdsSQL);
-            for (int i : ingredientId) {
-                statement.setInt(1, i);
-                ResultSet recipesIdsResult = statement.executeQuery();
-                while (recipesIdsResult.next()) {
-                    int recipeId = recipesIdsResult.getInt("recipe_id");
-                    Recipe recipe = Recipe.find(recipeId);
-                    if (!recipes.contains(recipe))
-                        recipes.add(Recipe.find(recipeId));
+            String pageSQL = "select id,name from " + table + " where id>? order by id limit ?";
+            try (PreparedStatement statement = DBConnection.prepareStatment(pageSQL)) {
+                statement.setInt(1, afterId);
+                statement.setInt(2, limit);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    ingredients.add(new Ingredient(resultSet.getInt("id"), resultSet.getString("name")));
                 }
-                recipesIdsResult.close();
+                resultSet.close();
             }
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
-        return recipes;
+        return ingredients;
+    }
+
+    /**
+     * stream all ingredients in id order loading one page at a time, memory use does not grow with table size
+     * @param pageSize ingredients per page
+     * @return lazy Stream of Ingredient objects
+     */
+    public static Stream<Ingredient> stream(int pageSize) {
+        return KeysetPager.stream(Ingredient::page, Ingredient::getId, pageSize);
+    }
+
+    /**
+     * return all recipes that has this ingredient based on ingredient id
+     * @param ingredientId ingredient id
+     * @return ArrayList of Recipes
+     */
+    public static ArrayList<Recipe> getIngredientRecipes(int ...ingredientId) {
+        if (ingredientId.length == 0)
+            return new ArrayList<>();
+        if (RecipeIndex.isBuilt())
+            return Recipe.findAll(RecipeIndex.query().anyIngredients(ingredientId).ids());
+        Object[] params = Arrays.stream(ingredientId).boxed().toArray();
+        return Recipe.load("id in (select recipe_id from recipes_ingredients where ingredient_id in " + DBConnection.placeholders(params.length) + ")", params);
+    }
+
+    /**
+     * get page of recipes that have given ingredient in id order
+     * @param ingredientId ingredient id
+     * @param afterId page starts after this recipe id, 0 for first page
+     * @param limit max count of recipes in page
+     * @return ArrayList of Recipes ordered by id
+     */
+    public static ArrayList<Recipe> getIngredientRecipesPage(int ingredientId, int afterId, int limit) {
+        if (RecipeIndex.isBuilt())
+            return Recipe.findAll(RecipeIndex.query().anyIngredients(ingredientId).ids(afterId, limit));
+        return Recipe.load("id in (select recipe_id from recipes_ingredients where ingredient_id=? and recipe_id>? order by recipe_id limit ?)", ingredientId, afterId, limit);
     }
 
     /**
@@ -202,10 +311,12 @@ public class Ingredient implements Model {
         int count = 0;
         try {
             String countSQL = "select count(id) from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(countSQL);
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            count = resultSet.getInt(1);
+            try (PreparedStatement statement = DBConnection.prepareStatment(countSQL)) {
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+                count = resultSet.getInt(1);
+                resultSet.close();
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -1,7 +1,37 @@
 package db.models;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface Model {
     public void save();
     public void update();
     public void delete();
+    public int getId();
+
+    /**
+     * save model on write behind thread, model must not be changed until future is completed
+     *
+     * @return future of generated id
+     */
+    public default CompletableFuture<Integer> saveAsync() {
+        return WriteBehind.submit(this, WriteBehind.Kind.SAVE);
+    }
+
+    /**
+     * update model on write behind thread, model must not be changed until future is completed
+     *
+     * @return future of model id
+     */
+    public default CompletableFuture<Integer> updateAsync() {
+        return WriteBehind.submit(this, WriteBehind.Kind.UPDATE);
+    }
+
+    /**
+     * delete model on write behind thread
+     *
+     * @return future of model id
+     */
+    public default CompletableFuture<Integer> deleteAsync() {
+        return WriteBehind.submit(this, WriteBehind.Kind.DELETE);
+    }
 }
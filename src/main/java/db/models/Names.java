@@ -0,0 +1,86 @@
+package db.models;
+
+import db.DBConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * bulk lookup of name tables (categories, ingredients) shared by models
+ */
+final class Names {
+    private static final int CHUNK_SIZE = 500; // stay below sqlite host parameters limit
+
+    private Names() {
+    }
+
+    /**
+     * get ids of given names, names that are not exist in table are inserted in one batch
+     *
+     * @param table name table
+     * @param names names to resolve
+     * @return map of name to id
+     */
+    static HashMap<String, Integer> resolve(String table, Collection<String> names) throws SQLException {
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+        if (distinct.isEmpty())
+            return ids;
+        select(table, distinct, ids);
+
+        ArrayList<String> missing = new ArrayList<>();
+        for (String name : distinct) {
+            if (!ids.containsKey(name))
+                missing.add(name);
+        }
+        if (missing.isEmpty())
+            return ids;
+
+        try (PreparedStatement statement = DBConnection.prepareStatment("insert or ignore into " + table + " (name) values(?)")) {
+            for (String name : missing) {
+                statement.setString(1, name);
+                statement.addBatch();
+            }
+            statement.executeBatch(); // create all missing names at once
+        }
+        select(table, missing, ids);
+        return ids;
+    }
+
+    /**
+     * get ids of given names without inserting missing names
+     *
+     * @param table name table
+     * @param names names to look up
+     * @return map of name to id of names that exist
+     */
+    static HashMap<String, Integer> find(String table, Collection<String> names) throws SQLException {
+        HashMap<String, Integer> ids = new HashMap<>();
+        select(table, new ArrayList<>(new LinkedHashSet<>(names)), ids);
+        return ids;
+    }
+
+    /**
+     * select ids of names in chunks and put them in ids map
+     */
+    private static void select(String table, List<String> names, HashMap<String, Integer> ids) throws SQLException {
+        for (int from = 0; from < names.size(); from += CHUNK_SIZE) {
+            List<String> chunk = names.subList(from, Math.min(names.size(), from + CHUNK_SIZE));
+            String selectSQL = "select id,name from " + table + " where name in " + DBConnection.placeholders(chunk.size());
+            try (PreparedStatement statement = DBConnection.prepareStatment(selectSQL)) {
+                DBConnection.bind(statement, chunk.toArray());
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    ids.put(result.getString("name"), result.getInt("id"));
+                }
+                result.close();
+            }
+        }
+    }
+}
@@ -1,22 +1,42 @@
 package db.models;
 
 import db.DBConnection;
+import db.KeysetPager;
+import db.QueryBudget;
+import db.index.RecipeIndex;
+import db.jfr.ModelWriteEvent;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Recipe implements Model {
     private int id;
     private String name, instructions;
     private ArrayList<Category> categories;
     private ArrayList<Ingredient> ingredients;
+    // state in database since load or last save, null when unknown. update writes only what differs from it
+    private String savedName, savedInstructions;
+    private HashMap<String, Integer> savedCategories, savedIngredients; // linked names to ids
 
     private static final String table = "recipes";
+    private static final int CHUNK_SIZE = 500; // stay below sqlite host parameters limit
+    /**
+     * statements of loading recipes with their links, one for recipes and one for each link table
+     */
+    public static final int LOAD_QUERIES = 3;
 
     public Recipe(int id, String name, String instructions, ArrayList<Category> categories, ArrayList<Ingredient> ingredients) {
         this.id = id;
@@ -159,272 +179,310 @@ public class Recipe implements Model {
      */
     @Override
     public void save() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String createNewRecipeSQL = "insert into " + table + " (name,instructions) values(?,?)";
-            PreparedStatement statement = DBConnection.prepareStatment(createNewRecipeSQL);
-            statement.setString(1, getName());
-            statement.setString(2, getInstructions());
-            int affectedRows = statement.executeUpdate(); // create new recipe
-            if (affectedRows > 0) {
-                ResultSet generatedKeys = statement.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    int lastInsertedId = generatedKeys.getInt(1);
-                    setId(lastInsertedId);
+            DBConnection.inTransaction(() -> { // recipe and all of its links are committed together
+                String createNewRecipeSQL = "insert into " + table + " (name,instructions) values(?,?)";
+                try (PreparedStatement statement = DBConnection.prepareStatment(createNewRecipeSQL)) {
+                    statement.setString(1, getName());
+                    statement.setString(2, getInstructions());
+                    int affectedRows = statement.executeUpdate(); // create new recipe
+                    if (affectedRows > 0) {
+                        ResultSet generatedKeys = statement.getGeneratedKeys();
+                        if (generatedKeys.next()) {
+                            int lastInsertedId = generatedKeys.getInt(1);
+                            setId(lastInsertedId);
+                        }
+                        generatedKeys.close();
+                    }
                 }
-            }
-            statement.close();
-            linkCategories(); // link categories for recipe
-            linkIngredients(); // link ingredients for recipe
+                linkCategories(categories); // link categories for recipe
+                linkIngredients(ingredients); // link ingredients for recipe
+                int recipeId = getId();
+                ArrayList<Integer> categoryIds = categoriesIds(), ingredientIds = ingredientsIds();
+                Runnable saved = savedState(linkedIds(categories, Category::getName, Category::getId),
+                        linkedIds(ingredients, Ingredient::getName, Ingredient::getId));
+                DBConnection.afterCommit(() -> {
+                    RecipeIndex.link(recipeId, categoryIds, ingredientIds);
+                    saved.run();
+                });
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "save");
         }
     }
 
     /**
-     * update the recipe in database
+     * update the recipe in database, only fields and links that changed since load or last save are written
+     * and an unchanged recipe runs no statement
      */
     @Override
     public void update() {
+        if (!isDirty())
+            return;
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String updateSQL = "UPDATE " + table + " SET name = ?, instructions = ? where id = ?";
-            PreparedStatement statement = DBConnection.prepareStatment(updateSQL);
-            statement.setString(1, getName());
-            statement.setString(2, getInstructions());
-            statement.setInt(3, getId());
-            statement.executeUpdate(); // update recipe row in recipes table
-            statement.close();
-
-            updateCategories(); // update categories
-            updateIngredients(); // update ingredients
+            DBConnection.inTransaction(() -> {
+                if (savedName == null || !Objects.equals(name, savedName) || !Objects.equals(instructions, savedInstructions)) {
+                    String updateSQL = "UPDATE " + table + " SET name = ?, instructions = ? where id = ?";
+                    try (PreparedStatement statement = DBConnection.prepareStatment(updateSQL)) {
+                        statement.setString(1, getName());
+                        statement.setString(2, getInstructions());
+                        statement.setInt(3, getId());
+                        statement.executeUpdate(); // update recipe row in recipes table
+                    }
+                }
+
+                HashMap<String, Integer> categoryIds = updateCategories(); // update categories
+                HashMap<String, Integer> ingredientIds = updateIngredients(); // update ingredients
+                boolean linksChanged = !categoryIds.equals(savedCategories) || !ingredientIds.equals(savedIngredients);
+                int recipeId = getId();
+                Runnable saved = savedState(categoryIds, ingredientIds);
+                DBConnection.afterCommit(() -> {
+                    if (linksChanged)
+                        RecipeIndex.replace(recipeId, new ArrayList<>(categoryIds.values()), new ArrayList<>(ingredientIds.values()));
+                    saved.run();
+                });
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "update");
         }
     }
 
+    /**
+     * check if recipe differs from its state in database
+     *
+     * @return true when recipe was changed since load or last save, or its state in database is unknown
+     */
+    public boolean isDirty() {
+        return savedName == null || savedCategories == null || savedIngredients == null
+                || !Objects.equals(name, savedName) || !Objects.equals(instructions, savedInstructions)
+                || !savedCategories.keySet().equals(names(categories, Category::getName))
+                || !savedIngredients.keySet().equals(names(ingredients, Ingredient::getName));
+    }
+
+    /**
+     * remember given fields and links as state in database
+     */
+    private void markSaved(String name, String instructions, HashMap<String, Integer> categoryIds, HashMap<String, Integer> ingredientIds) {
+        savedName = name;
+        savedInstructions = instructions;
+        savedCategories = categoryIds;
+        savedIngredients = ingredientIds;
+    }
+
+    /**
+     * action that marks state of now as saved, for after commit of transaction that writes it
+     */
+    private Runnable savedState(HashMap<String, Integer> categoryIds, HashMap<String, Integer> ingredientIds) {
+        String name = this.name, instructions = this.instructions;
+        return () -> markSaved(name, instructions, categoryIds, ingredientIds);
+    }
+
     /**
      * delete recipe
      */
     @Override
     public void delete() {
+        ModelWriteEvent event = ModelWriteEvent.start();
         try {
-            String deleteSQL = "delete from " + table + " where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(deleteSQL);
-            statement.setInt(1, getId());
-            statement.executeUpdate(); //delete recipe row from recipes table
-            statement.close();
+            DBConnection.inTransaction(() -> {
+                String deleteSQL = "delete from " + table + " where id=?";
+                try (PreparedStatement statement = DBConnection.prepareStatment(deleteSQL)) {
+                    statement.setInt(1, getId());
+                    statement.executeUpdate(); //delete recipe row from recipes table
+                }
 
-            unlinkCategories(); // unlink all categories
-            unlinkIngredients(); // unlink all ingredients
+                unlinkAll("recipes_categories"); // unlink all categories
+                unlinkAll("recipes_ingredients"); // unlink all ingredients
+                int recipeId = getId();
+                DBConnection.afterCommit(() -> RecipeIndex.removeRecipe(recipeId));
+                return null;
+            });
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+        } finally {
+            ModelWriteEvent.end(event, this, "delete");
         }
     }
 
     /**
-     * unlink removed and link added categories from recipe
+     * ids of categories of this recipe, valid after categories are linked
      */
-    private void updateCategories() {
-        ArrayList<Category> removedCategories = categories().stream()
-                .filter((category) -> !categories.contains(category))
-                .collect(Collectors.toCollection(ArrayList::new)); // get categories that removed from recipe and most unlink
-
-        ArrayList<Category> addedCategories = categories.stream()
-                .filter((category -> !categories().contains(category)))
-                .collect(Collectors.toCollection(ArrayList::new)); // get categories that added to recipe and most link
-
-        unlinkCategories(removedCategories); // unlink removed categories
-        linkCategories(addedCategories); // link newly added categories
+    private ArrayList<Integer> categoriesIds() {
+        return categories.stream().map(Category::getId).collect(Collectors.toCollection(ArrayList::new));
     }
 
     /**
-     * link categories for recipe if there is one category that not exists in database create one
+     * ids of ingredients of this recipe, valid after ingredients are linked
      */
-    private void linkCategories() {
-        try {
-            String linkRecipeCategorySQL = "insert into recipes_categories (recipe_id,category_id) values(?,?);";
-            PreparedStatement statement = DBConnection.prepareStatment(linkRecipeCategorySQL);
-            statement.setInt(1, getId());
-            for (Category category : categories) {
+    private ArrayList<Integer> ingredientsIds() {
+        return ingredients.stream().map(Ingredient::getId).collect(Collectors.toCollection(ArrayList::new));
+    }
 
-                if (!Category.exists(category.getName()))
-                    category.save();
-                else
-                    category = Category.find(category.getName());
+    /**
+     * unlink removed and link added categories from recipe, found with one set difference against linked categories
+     *
+     * @return names to ids of categories linked after update
+     */
+    private HashMap<String, Integer> updateCategories() throws SQLException {
+        HashMap<String, Integer> linked = savedCategories != null ? savedCategories : linkedIds("recipes_categories", "categories", "category_id");
+        LinkedHashMap<String, Integer> current = new LinkedHashMap<>();
+        ArrayList<Category> addedCategories = new ArrayList<>();
+        for (Category category : categories) {
+            if (current.containsKey(category.getName()))
+                continue;
+            Integer linkedId = linked.get(category.getName());
+            current.put(category.getName(), linkedId);
+            if (linkedId == null)
+                addedCategories.add(category); // categories that added to recipe and must link
+        }
 
-                statement.setInt(2, category.getId());
-                statement.executeUpdate();
-            }
-            statement.close(); //close statment
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
+        unlink("delete from recipes_categories where recipe_id=? and category_id=?", linked, current); // unlink removed categories
+        if (!addedCategories.isEmpty()) {
+            linkCategories(addedCategories); // link newly added categories
+            addedCategories.forEach((category) -> current.put(category.getName(), category.getId()));
         }
+        return current;
     }
 
     /**
-     * linked given categories to recipe
+     * linked given categories to recipe, categories that not exists in database are created
      *
      * @param categories categories ArrayList
      */
-    private void linkCategories(ArrayList<Category> categories) {
-        try {
-            String linkRecipeCategorySQL = "insert into recipes_categories (recipe_id,category_id) values(?,?);";
-            PreparedStatement statement = DBConnection.prepareStatment(linkRecipeCategorySQL);
-            statement.setInt(1, getId());
-            for (Category category : categories) {
+    private void linkCategories(ArrayList<Category> categories) throws SQLException {
+        Category.resolve(categories); // find or create all categories at once
+        LinkedHashSet<Integer> categoriesIds = new LinkedHashSet<>();
+        categories.forEach((category) -> categoriesIds.add(category.getId()));
+        link("insert or ignore into recipes_categories (recipe_id,category_id) values(?,?);", categoriesIds);
+    }
 
-                if (!Category.exists(category.getName()))
-                    category.save();
-                else
-                    category = Category.find(category.getName());
+    /**
+     * unlink removed and link added ingredients from recipe, found with one set difference against linked ingredients
+     *
+     * @return names to ids of ingredients linked after update
+     */
+    private HashMap<String, Integer> updateIngredients() throws SQLException {
+        HashMap<String, Integer> linked = savedIngredients != null ? savedIngredients : linkedIds("recipes_ingredients", "ingredients", "ingredient_id");
+        LinkedHashMap<String, Integer> current = new LinkedHashMap<>();
+        ArrayList<Ingredient> addedIngredients = new ArrayList<>();
+        for (Ingredient ingredient : ingredients) {
+            if (current.containsKey(ingredient.getName()))
+                continue;
+            Integer linkedId = linked.get(ingredient.getName());
+            current.put(ingredient.getName(), linkedId);
+            if (linkedId == null)
+                addedIngredients.add(ingredient);
+        }
 
-                statement.setInt(2, category.getId());
-                statement.executeUpdate();
-            }
-            statement.close(); //close statment
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
+        unlink("delete from recipes_ingredients where recipe_id=? and ingredient_id=?", linked, current); // unlink removed ingredients
+        if (!addedIngredients.isEmpty()) {
+            linkIngredients(addedIngredients); // link added ingredients
+            addedIngredients.forEach((ingredient) -> current.put(ingredient.getName(), ingredient.getId()));
         }
+        return current;
     }
 
     /**
-     * unlink categories from recipes
+     * unlink ids of linked names that are not in current names, in one batch
      *
-     * @param categories categories to unlink
+     * @param SQL     delete statement with recipe id as first and linked id as second parameter
+     * @param linked  names to ids linked in database
+     * @param current names linked after update
      */
-    private void unlinkCategories(ArrayList<Category> categories) {
-        try {
-            String unlinkCategorySQL = "delete from recipes_categories where recipe_id=? and category_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(unlinkCategorySQL);
-            statement.setInt(1, getId());
-            for (Category category : categories) {
-                statement.setInt(2, category.getId());
-                statement.executeUpdate();
-            }
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
+    private void unlink(String SQL, HashMap<String, Integer> linked, HashMap<String, Integer> current) throws SQLException {
+        ArrayList<Integer> removedIds = new ArrayList<>();
+        linked.forEach((name, id) -> {
+            if (!current.containsKey(name))
+                removedIds.add(id);
+        });
+        link(SQL, removedIds);
     }
 
     /**
-     * unlink all categories for this recipe
-     */
-    private void unlinkCategories() {
-        try {
-            String unlinkCategorySQL = "delete from recipe_categories where recipe_id=? and category_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(unlinkCategorySQL);
+     * names to ids of rows of a table that are linked to this recipe in database
+     *
+     * @param linkTable link table like recipes_categories
+     * @param table     linked table like categories
+     * @param column    column of linked id in link table
+     * @return linked names to ids
+     */
+    private HashMap<String, Integer> linkedIds(String linkTable, String table, String column) throws SQLException {
+        HashMap<String, Integer> linked = new HashMap<>();
+        String SQL = "select name,id from " + linkTable + " join " + table + " on " + table + ".id=" + column + " where recipe_id=?";
+        try (PreparedStatement statement = DBConnection.prepareStatment(SQL)) {
             statement.setInt(1, getId());
-            for (Category category : categories) {
-                statement.setInt(2, category.getId());
-                statement.executeUpdate();
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                linked.put(result.getString(1), result.getInt(2));
             }
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
+            result.close();
         }
+        return linked;
     }
 
     /**
-     * unlink removed and link added ingredients from recipe
+     * names to ids of loaded or saved models
      */
-    private void updateIngredients() {
-        ArrayList<Ingredient> removedIngredients = ingredients().stream()
-                .filter((ingredient -> !ingredients.contains(ingredient)))
-                .collect(Collectors.toCollection(ArrayList::new)); // get ingredients that removed from recipe and most unlink
-
-        ArrayList<Ingredient> addedIngredients = ingredients.stream()
-                .filter((ingredient -> !ingredients().contains(ingredient)))
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        unlinkIngredients(removedIngredients); // unlink removed ingredients
-        linkIngredients(addedIngredients); // link added ingredients
+    private static <T> HashMap<String, Integer> linkedIds(Collection<T> models, Function<T, String> nameOf, ToIntFunction<T> idOf) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        models.forEach((model) -> ids.putIfAbsent(nameOf.apply(model), idOf.applyAsInt(model)));
+        return ids;
     }
 
-    /**
-     * link ingredients for recipe if there is one ingredient that not exists in database create one
-     */
-    private void linkIngredients() {
-        try {
-            String linkRecipeIngredientSQL = "insert into recipes_ingredients (recipe_id,ingredient_id) values(?,?);";
-            PreparedStatement statement = DBConnection.prepareStatment(linkRecipeIngredientSQL);
-            statement.setInt(1, getId());
-            for (Ingredient ingredient : ingredients) {
-
-                if (!Ingredient.exists(ingredient.getName()))
-                    ingredient.save();
-                else
-                    ingredient = Ingredient.find(ingredient.getName());
-
-                statement.setInt(2, ingredient.getId());
-                statement.executeUpdate();
-            }
-            statement.close(); //close statment
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
+    private static <T> HashSet<String> names(Collection<T> models, Function<T, String> nameOf) {
+        HashSet<String> names = new HashSet<>();
+        models.forEach((model) -> names.add(nameOf.apply(model)));
+        return names;
     }
 
     /**
-     * link given Ingredients to recipe
+     * link given Ingredients to recipe, ingredients that not exists in database are created
      *
      * @param ingredients ArrayList of Ingredients
      */
-    private void linkIngredients(ArrayList<Ingredient> ingredients) {
-        try {
-            String linkRecipeIngredientSQL = "insert into recipes_ingredients (recipe_id,ingredient_id) values(?,?);";
-            PreparedStatement statement = DBConnection.prepareStatment(linkRecipeIngredientSQL);
-            statement.setInt(1, getId());
-            for (Ingredient ingredient : ingredients) {
-
-                if (!Ingredient.exists(ingredient.getName()))
-                    ingredient.save();
-                else
-                    ingredient = Ingredient.find(ingredient.getName());
-
-                statement.setInt(2, ingredient.getId());
-                statement.executeUpdate();
-            }
-            statement.close(); //close statment
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
-        }
+    private void linkIngredients(ArrayList<Ingredient> ingredients) throws SQLException {
+        Ingredient.resolve(ingredients); // find or create all ingredients at once
+        LinkedHashSet<Integer> ingredientsIds = new LinkedHashSet<>();
+        ingredients.forEach((ingredient) -> ingredientsIds.add(ingredient.getId()));
+        link("insert or ignore into recipes_ingredients (recipe_id,ingredient_id) values(?,?);", ingredientsIds);
     }
 
     /**
-     * unlink ingredients from recipe
+     * run given link statement for this recipe and each of given ids in one batch
      *
-     * @param ingredients ingredients to unlink
+     * @param SQL statement with recipe id as first and linked id as second parameter
+     * @param ids linked ids
      */
-    private void unlinkIngredients(ArrayList<Ingredient> ingredients) {
-        try {
-            String unlinkCategorySQL = "delete from recipes_ingredients where recipe_id=? and ingredient_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(unlinkCategorySQL);
+    private void link(String SQL, Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty())
+            return;
+        try (PreparedStatement statement = DBConnection.prepareStatment(SQL)) {
             statement.setInt(1, getId());
-            for (Ingredient ingredient : ingredients) {
-                statement.setInt(2, ingredient.getId());
-                statement.executeUpdate();
+            for (int id : ids) {
+                statement.setInt(2, id);
+                statement.addBatch();
             }
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
+            statement.executeBatch();
         }
     }
 
     /**
-     * unlink all ingredients for this recipe
+     * unlink all rows of given link table for this recipe
+     *
+     * @param linkTable recipes_categories or recipes_ingredients
      */
-    private void unlinkIngredients() {
-        try {
-            String unlinkCategorySQL = "delete from recipes_ingredients where recipe_id=? and ingredient_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(unlinkCategorySQL);
+    private void unlinkAll(String linkTable) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("delete from " + linkTable + " where recipe_id=?")) {
             statement.setInt(1, getId());
-            for (Ingredient ingredient : ingredients) {
-                statement.setInt(2, ingredient.getId());
-                statement.executeUpdate();
-            }
-            statement.close();
-        } catch (SQLException e) {
-            System.err.println(e.getMessage());
+            statement.executeUpdate();
         }
     }
 
@@ -435,52 +493,107 @@ public class Recipe implements Model {
      * @return return null if no recipe found with given id or Recipe object of founded recipe
      */
     public static Recipe find(int id) {
-        Recipe recipe = null;
+        ArrayList<Recipe> recipes = load("id=?", id);
+        return recipes.isEmpty() ? null : recipes.get(0);
+    }
+
+    /**
+     * find an recipe in database based on given name
+     * @param name name of recipe
+     * @return Recipe
+     */
+    public static Recipe find(String name) {
+        ArrayList<Recipe> recipes = load("name=?", name);
+        return recipes.isEmpty() ? null : recipes.get(recipes.size() - 1);
+    }
+
+    /**
+     * find recipes with given ids
+     *
+     * @param ids recipes ids
+     * @return found recipes ordered by id
+     */
+    public static ArrayList<Recipe> findAll(int... ids) {
+        ArrayList<Recipe> recipes = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+            Object[] chunk = Arrays.stream(ids, from, Math.min(ids.length, from + CHUNK_SIZE)).boxed().toArray();
+            recipes.addAll(load("id in " + DBConnection.placeholders(chunk.length), chunk));
+        }
+        return recipes;
+    }
+
+    /**
+     * full text search in name and instructions of recipes, name matches weigh twice as much as instructions
+     *
+     * @param text     words to search, recipes must have all words
+     * @param page     page number starting from 0
+     * @param pageSize recipes per page
+     * @return page of matching recipes, best match first
+     */
+    public static ArrayList<Recipe> searchText(String text, int page, int pageSize) {
+        String match = matchQuery(text);
+        if (match.isEmpty())
+            return new ArrayList<>();
+        ArrayList<Integer> ids = new ArrayList<>();
         try {
-            String getRecipeSQL = "select * from " + table + " where id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getRecipeSQL);
-            statement.setInt(1, id);
-            ResultSet recipeResult = statement.executeQuery();
-            while (recipeResult.next()) {
-                String name = recipeResult.getString("name");
-                String instructions = recipeResult.getString("instructions");
-                ArrayList<Category> categories = getRecipeCategories(id);
-                ArrayList<Ingredient> ingredients = getRecipeIngredients(id);
-                recipe = new Recipe(id, name, instructions, categories, ingredients);
+            String searchSQL = "select docid from recipes_fts where recipes_fts match ? order by bm25(matchinfo(recipes_fts,'pcnalx'),2.0,1.0) desc,docid limit ? offset ?";
+            try (PreparedStatement statement = DBConnection.prepareStatment(searchSQL)) {
+                statement.setString(1, match);
+                statement.setInt(2, pageSize);
+                statement.setInt(3, page * pageSize);
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    ids.add(result.getInt(1));
+                }
+                result.close();
             }
-            recipeResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
-        return recipe;
+        HashMap<Integer, Recipe> found = new HashMap<>();
+        findAll(ids.stream().mapToInt(Integer::intValue).toArray()).forEach((recipe) -> found.put(recipe.getId(), recipe));
+        ArrayList<Recipe> ranked = new ArrayList<>(); // findAll returns id order, put back in rank order
+        for (int id : ids) {
+            if (found.containsKey(id))
+                ranked.add(found.get(id));
+        }
+        return ranked;
     }
 
     /**
-     * find an recipe in database based on given name
-     * @param name name of recipe
-     * @return Recipe
+     * count of recipes that full text search finds
+     *
+     * @param text words to search
+     * @return count of matching recipes
      */
-    public static Recipe find(String name) {
-        Recipe recipe = null;
+    public static int countText(String text) {
+        String match = matchQuery(text);
+        if (match.isEmpty())
+            return 0;
+        int count = 0;
         try {
-            String getRecipeSQL = "select * from " + table + " where name=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getRecipeSQL);
-            statement.setString(1, name);
-            ResultSet recipeResult = statement.executeQuery();
-            while (recipeResult.next()) {
-                int id = recipeResult.getInt("id");
-                String instructions = recipeResult.getString("instructions");
-                ArrayList<Category> categories = getRecipeCategories(id);
-                ArrayList<Ingredient> ingredients = getRecipeIngredients(id);
-                recipe = new Recipe(id, name, instructions, categories, ingredients);
+            try (PreparedStatement statement = DBConnection.prepareStatment("select count(*) from recipes_fts where recipes_fts match ?")) {
+                statement.setString(1, match);
+                ResultSet result = statement.executeQuery();
+                count = result.next() ? result.getInt(1) : 0;
+                result.close();
             }
-            recipeResult.close();
-            statement.close();
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
-        return recipe;
+        return count;
+    }
+
+    /**
+     * turn user text to fts query, every word is quoted so user text cannot break query syntax
+     */
+    private static String matchQuery(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty())
+                builder.append(builder.length() == 0 ? "" : " ").append('"').append(word).append('"');
+        }
+        return builder.toString();
     }
 
     /**
@@ -503,25 +616,88 @@ public class Recipe implements Model {
      * @return ArrayList of all recipes
      */
     public static ArrayList<Recipe> all() {
-        ArrayList<Recipe> allData = new ArrayList<>();
+        return QueryBudget.within("Recipe.all", LOAD_QUERIES, () -> load(null));
+    }
+
+    /**
+     * get page of recipes in id order with their categories and ingredients
+     *
+     * @param afterId page starts after this id, 0 for first page
+     * @param limit   max count of recipes in page
+     * @return ArrayList of recipes ordered by id
+     */
+    public static ArrayList<Recipe> page(int afterId, int limit) {
+        return load("id in (select id from " + table + " where id>? order by id limit ?)", afterId, limit);
+    }
+
+    /**
+     * stream all recipes in id order loading one page and its links at a time,
+     * memory use does not grow with count of recipes
+     *
+     * @param pageSize recipes per page
+     * @return lazy Stream of recipes
+     */
+    public static Stream<Recipe> stream(int pageSize) {
+        return KeysetPager.stream(Recipe::page, Recipe::getId, pageSize);
+    }
+
+    /**
+     * load recipes that match given filter with their categories and ingredients.
+     * runs one query for recipes and one joined query for each link table no matter how many recipes match
+     *
+     * @param filter where clause on recipes table (without where keyword) or null for all recipes
+     * @param params values of filter placeholders
+     * @return ArrayList of Recipe objects ordered by id
+     */
+    static ArrayList<Recipe> load(String filter, Object... params) {
+        LinkedHashMap<Integer, Recipe> recipes = new LinkedHashMap<>();
+        String where = filter == null ? "" : " where " + filter;
+        String recipeIds = filter == null ? "" : " where recipe_id in (select id from " + table + where + ")";
         try {
-            String SQL = "select * from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(SQL);
-            ResultSet result = statement.executeQuery();
-            while (result.next()) {
-                int id = result.getInt("id");
-                String name = result.getString("name");
-                String instructions = result.getString("instructions");
-                ArrayList<Category> categories = getRecipeCategories(id); // get all categories of recipe from database
-                ArrayList<Ingredient> ingredients = getRecipeIngredients(id); // get all ingredients of recipe from database
-                allData.add(new Recipe(id, name, instructions, categories, ingredients));
+            String recipesSQL = "select id,name,instructions from " + table + where + " order by id";
+            try (PreparedStatement statement = DBConnection.prepareStatment(recipesSQL)) {
+                DBConnection.bind(statement, params);
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    int id = result.getInt("id");
+                    String name = result.getString("name");
+                    String instructions = result.getString("instructions");
+                    recipes.put(id, new Recipe(id, name, instructions, new ArrayList<>(), new ArrayList<>()));
+                }
+                result.close();
+            }
+            if (recipes.isEmpty())
+                return new ArrayList<>();
+
+            String categoriesSQL = "select recipe_id,id,name from recipes_categories join categories on categories.id=category_id" + recipeIds;
+            try (PreparedStatement statement = DBConnection.prepareStatment(categoriesSQL)) {
+                DBConnection.bind(statement, params);
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    Recipe recipe = recipes.get(result.getInt("recipe_id"));
+                    if (recipe != null) // recipe inserted after first query
+                        recipe.categories.add(new Category(result.getInt("id"), result.getString("name")));
+                }
+                result.close();
+            }
+
+            String ingredientsSQL = "select recipe_id,id,name from recipes_ingredients join ingredients on ingredients.id=ingredient_id" + recipeIds;
+            try (PreparedStatement statement = DBConnection.prepareStatment(ingredientsSQL)) {
+                DBConnection.bind(statement, params);
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    Recipe recipe = recipes.get(result.getInt("recipe_id"));
+                    if (recipe != null)
+                        recipe.ingredients.add(new Ingredient(result.getInt("id"), result.getString("name")));
+                }
+                result.close();
             }
-            result.close(); // close recipes result set
-            statement.close(); // close statments
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
-        return allData;
+        recipes.values().forEach((recipe) -> recipe.markSaved(recipe.name, recipe.instructions, linkedIds(recipe.categories, Category::getName, Category::getId),
+                linkedIds(recipe.ingredients, Ingredient::getName, Ingredient::getId)));
+        return new ArrayList<>(recipes.values());
     }
 
     /**
@@ -542,23 +718,15 @@ public class Recipe implements Model {
     public static ArrayList<Category> getRecipeCategories(int recipeId) {
         ArrayList<Category> categories = new ArrayList<>();
         try {
-            String getCategoriesIdsSQL = "select category_id from recipes_categories where recipe_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getCategoriesIdsSQL);
-            statement.setInt(1, recipeId);
-            ResultSet categoriesIds = statement.executeQuery(); // get ids of all categories that recipe have
-            while (categoriesIds.next()) { // loop in selected category ids
-                int categoryId = categoriesIds.getInt("category_id");
-                String getCategoriesNameSQL = "select name from categories where id=" + categoryId;
-                Statement categoryNameStatement = DBConnection.getStatment();
-                ResultSet categoriesNames = categoryNameStatement.executeQuery(getCategoriesNameSQL); // get names of all categories that recipe have
-                while (categoriesNames.next()) { // loop in selected category name
-                    String categoryName = categoriesNames.getString("name");
-                    categories.add(new Category(categoryId, categoryName)); //create and add new category object to categories ArrayList
+            String getCategoriesSQL = "select id,name from recipes_categories join categories on categories.id=category_id where recipe_id=?";
+            try (PreparedStatement statement = DBConnection.prepareStatment(getCategoriesSQL)) {
+                statement.setInt(1, recipeId);
+                ResultSet result = statement.executeQuery(); // get all categories that recipe have
+                while (result.next()) {
+                    categories.add(new Category(result.getInt("id"), result.getString("name")));
                 }
-                categoriesNames.close(); // close name result set
+                result.close();
             }
-            categoriesIds.close(); // close ids result set
-            statement.close(); // close statment
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -583,23 +751,15 @@ public class Recipe implements Model {
     public static ArrayList<Ingredient> getRecipeIngredients(int recipeId) {
         ArrayList<Ingredient> ingredients = new ArrayList<>();
         try {
-            String getIngredientsIdsSQL = "select ingredient_id from recipes_ingredients where recipe_id=?";
-            PreparedStatement statement = DBConnection.prepareStatment(getIngredientsIdsSQL);
-            statement.setInt(1, recipeId);
-            ResultSet ingredientsIds = statement.executeQuery(); // get ids of all ingredients that recipe have
-            while (ingredientsIds.next()) { // loop in selected ingredients ids
-                int ingredientId = ingredientsIds.getInt("ingredient_id");
-                String getIngredientsNameSQL = "select name from ingredients where id=" + ingredientId;
-                Statement ingredientNameStatment = DBConnection.getStatment();
-                ResultSet ingredientsNames = ingredientNameStatment.executeQuery(getIngredientsNameSQL); // get names of all ingredients that recipe have
-                while (ingredientsNames.next()) { // loop in selected ingredient name
-                    String ingredientName = ingredientsNames.getString("name");
-                    ingredients.add(new Ingredient(ingredientId, ingredientName)); //create and add new ingredients object to categories ArrayList
+            String getIngredientsSQL = "select id,name from recipes_ingredients join ingredients on ingredients.id=ingredient_id where recipe_id=?";
+            try (PreparedStatement statement = DBConnection.prepareStatment(getIngredientsSQL)) {
+                statement.setInt(1, recipeId);
+                ResultSet result = statement.executeQuery(); // get all ingredients that recipe have
+                while (result.next()) {
+                    ingredients.add(new Ingredient(result.getInt("id"), result.getString("name")));
                 }
-                ingredientsNames.close(); // close names result set
+                result.close();
             }
-            ingredientsIds.close(); // close ids result set
-            statement.close(); // close statment
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
@@ -614,10 +774,12 @@ public class Recipe implements Model {
         int count = 0;
         try {
             String countSQL = "select count(id) from " + table;
-            PreparedStatement statement = DBConnection.prepareStatment(countSQL);
-            ResultSet resultSet = statement.executeQuery();
-            resultSet.next();
-            count = resultSet.getInt(1);
+            try (PreparedStatement statement = DBConnection.prepareStatment(countSQL)) {
+                ResultSet resultSet = statement.executeQuery();
+                resultSet.next();
+                count = resultSet.getInt(1);
+                resultSet.close();
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
         }
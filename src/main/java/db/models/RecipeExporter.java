@@ -0,0 +1,133 @@
+package db.models;
+
+import db.DBConnection;
+import util.Csv;
+import util.Json;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * export of all recipes to a csv or jsonl file that {@link RecipeImporter} can read again.
+ * rows are read from one cursor in id order and written one by one, no recipe objects are created
+ * so memory use does not grow with count of recipes
+ */
+public class RecipeExporter {
+    private static final int PROGRESS_INTERVAL = 10000;
+    private static final String SEPARATOR = "\u001f"; // char(31), can not be part of a name typed by user
+    private static final String EXPORT_SQL = "select id,name,instructions," +
+            "(select group_concat(categories.name,char(31)) from recipes_categories join categories on categories.id=category_id where recipe_id=recipes.id)," +
+            "(select group_concat(ingredients.name,char(31)) from recipes_ingredients join ingredients on ingredients.id=ingredient_id where recipe_id=recipes.id) " +
+            "from recipes order by id";
+
+    private final File file;
+    private LongConsumer listener = (count) -> {
+    };
+
+    /**
+     * @param file csv or jsonl file, output is gzip compressed when name ends with .gz
+     */
+    public RecipeExporter(File file) {
+        this.file = file;
+    }
+
+    /**
+     * set listener that is called with count of exported recipes every 10000 recipes
+     *
+     * @param listener progress listener
+     */
+    public void setListener(LongConsumer listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * write all recipes to file, file is replaced only when export is complete
+     *
+     * @return count of exported recipes
+     */
+    public long run() throws IOException, SQLException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        boolean compressed = name.endsWith(".gz");
+        if (compressed)
+            name = name.substring(0, name.length() - 3);
+        boolean csv = name.endsWith(".csv");
+
+        File part = new File(file.getPath() + ".part");
+        long count = 0;
+        OutputStream output = new FileOutputStream(part);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                compressed ? new GZIPOutputStream(output, 1 << 16) : output, StandardCharsets.UTF_8), 1 << 16);
+             PreparedStatement statement = DBConnection.prepareStatment(EXPORT_SQL)) {
+            StringBuilder line = new StringBuilder(1024);
+            if (csv) {
+                Csv.write(line, "id", "name", "instructions", "categories", "ingredients");
+                writer.append(line);
+            }
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                line.setLength(0);
+                String id = result.getString(1);
+                String recipeName = result.getString(2);
+                String instructions = result.getString(3);
+                String categories = result.getString(4);
+                String ingredients = result.getString(5);
+                if (csv)
+                    Csv.write(line, id, recipeName, instructions, joined(categories), joined(ingredients));
+                else
+                    jsonLine(line, id, recipeName, instructions, categories, ingredients);
+                writer.append(line);
+                if (++count % PROGRESS_INTERVAL == 0)
+                    listener.accept(count);
+            }
+            result.close();
+        } catch (IOException | SQLException e) {
+            part.delete();
+            throw e;
+        }
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * names of group_concat joined with separator of importer, separators and escapes in names are escaped
+     */
+    private static String joined(String names) {
+        if (names == null)
+            return "";
+        String escaped = names.replace(RecipeImporter.NAME_ESCAPE, RecipeImporter.NAME_ESCAPE + RecipeImporter.NAME_ESCAPE)
+                .replace(RecipeImporter.NAME_SEPARATOR, RecipeImporter.NAME_ESCAPE + RecipeImporter.NAME_SEPARATOR);
+        return escaped.replace(SEPARATOR, RecipeImporter.NAME_SEPARATOR);
+    }
+
+    private static void jsonLine(StringBuilder line, String id, String name, String instructions, String categories, String ingredients) {
+        line.append("{\"id\":").append(id).append(",\"name\":");
+        Json.quote(line, name);
+        line.append(",\"instructions\":");
+        Json.quote(line, instructions);
+        line.append(",\"categories\":");
+        Json.write(line, names(categories));
+        line.append(",\"ingredients\":");
+        Json.write(line, names(ingredients));
+        line.append("}\n");
+    }
+
+    private static List<String> names(String names) {
+        return names == null ? List.of() : Arrays.asList(names.split(SEPARATOR));
+    }
+}
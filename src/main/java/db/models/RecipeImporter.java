@@ -0,0 +1,503 @@
+package db.models;
+
+import db.DBConfig;
+import db.DBConnection;
+import db.index.RecipeIndex;
+import db.migrations.Migrations;
+import util.Csv;
+import util.Json;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * bulk import of recipes from a csv or jsonl file. one thread parses the file while caller thread writes
+ * batches of recipes, each batch in one transaction together with position of last record in file,
+ * so an interrupted import continues after last committed batch when it is run again.
+ * <p>
+ * csv files need a header with name column and optional instructions, categories and ingredients columns.
+ * jsonl files have one object per line with same fields. in both formats categories and ingredients
+ * can be a text with names separated by '|', in jsonl they can also be an array of names. a '|' or '\'
+ * that is part of a name is written as '\|' or '\\' in text
+ */
+public class RecipeImporter {
+    /**
+     * separator of names in categories and ingredients text
+     */
+    public static final String NAME_SEPARATOR = "|";
+    /**
+     * escape of separator in names text, a backslash before another character stays a backslash
+     */
+    public static final String NAME_ESCAPE = "\\";
+
+    private final File file;
+    private final int batchSize;
+    private Consumer<Progress> listener = (progress) -> {
+    };
+    private final HashMap<String, Integer> categoryIds = new HashMap<>();
+    private final HashMap<String, Integer> ingredientIds = new HashMap<>();
+    private volatile boolean stopped;
+
+    /**
+     * progress of an import
+     *
+     * @param records       records read from file, including skipped ones
+     * @param imported      recipes inserted
+     * @param skipped       records that are not valid recipes
+     * @param elapsedMillis time since import started
+     * @param done          whole file is imported
+     */
+    public record Progress(long records, long imported, long skipped, long elapsedMillis, boolean done) {
+        /**
+         * @return recipes inserted per second in this run
+         */
+        public long recipesPerSecond() {
+            return elapsedMillis == 0 ? 0 : imported * 1000 / elapsedMillis;
+        }
+    }
+
+    private record Row(String name, String instructions, List<String> categories, List<String> ingredients) {
+    }
+
+    /**
+     * rows of a batch and position of last record read for them
+     */
+    private record Batch(List<Row> rows, long position, long skipped) {
+    }
+
+    private static final Batch END = new Batch(List.of(), -1, 0);
+
+    /**
+     * @param file csv or jsonl file, may be gzip compressed (.gz)
+     */
+    public RecipeImporter(File file) {
+        this.file = file;
+        this.batchSize = Integer.parseInt(DBConfig.setting("import.batchSize", "5000"));
+    }
+
+    /**
+     * set listener that is called after each committed batch
+     *
+     * @param listener progress listener
+     */
+    public void setListener(Consumer<Progress> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * import file, continues after last committed batch of an earlier run of same file
+     *
+     * @return progress at end of import
+     */
+    public Progress run() throws IOException, SQLException {
+        long started = System.currentTimeMillis();
+        String source = file.getCanonicalPath();
+        long size = file.length();
+        long[] saved = savedProgress(source, size); // position, imported, done
+        if (saved[2] == 1)
+            return new Progress(saved[0], 0, 0, 0, true);
+
+        loadNames("categories", categoryIds);
+        loadNames("ingredients", ingredientIds);
+
+        stopped = false; // set by an earlier run that failed
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(4);
+        AtomicReference<Exception> parseError = new AtomicReference<>();
+        Thread parser = new Thread(() -> {
+            try {
+                parse(saved[0], queue);
+            } catch (Exception e) {
+                parseError.set(e);
+            } finally {
+                offer(queue, END);
+            }
+        }, "recipe-import-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        long position = saved[0];
+        long imported = 0;
+        long skipped = 0;
+        long indexed = lastRecipeId(); // recipes up to this id are in text index
+        Exception failure = null;
+        try {
+            pauseTextIndex();
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == END)
+                    break;
+                write(batch, source, size, saved[1] + imported + batch.rows().size());
+                position = batch.position();
+                imported += batch.rows().size();
+                skipped += batch.skipped();
+                listener.accept(new Progress(position, imported, skipped, System.currentTimeMillis() - started, false));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("import interrupted", e);
+            throw (IOException) failure;
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            stopped = true; // parser stops when writer failed
+            try {
+                restoreTextIndex(indexed); // committed batches are indexed also when import failed
+            } catch (SQLException e) {
+                if (failure == null)
+                    throw e;
+                failure.addSuppressed(e); // error of import is reported, not this later one
+            }
+        }
+
+        if (parseError.get() != null) {
+            Exception e = parseError.get();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        saveProgress(source, size, position, saved[1] + imported, true);
+        if (RecipeIndex.isBuilt())
+            RecipeIndex.build();
+        return new Progress(position, imported, skipped, System.currentTimeMillis() - started, true);
+    }
+
+    /**
+     * put batch in queue, gives up when writer has stopped
+     */
+    private boolean offer(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            while (!stopped) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * read records of file and put them in queue in batches
+     *
+     * @param skip count of records imported by an earlier run
+     */
+    private void parse(long skip, BlockingQueue<Batch> queue) throws IOException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        boolean compressed = name.endsWith(".gz");
+        if (compressed)
+            name = name.substring(0, name.length() - 3);
+        boolean csv = name.endsWith(".csv");
+
+        FileInputStream input = new FileInputStream(file);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                compressed ? new GZIPInputStream(input, 1 << 16) : input, StandardCharsets.UTF_8), 1 << 20)) {
+            Map<String, Integer> columns = csv ? header(reader) : null;
+            ArrayList<Row> rows = new ArrayList<>(batchSize);
+            long position = 0;
+            long skipped = 0;
+            while (true) {
+                List<String> fields = null;
+                String line = null;
+                if (csv) {
+                    fields = Csv.read(reader);
+                    if (fields == null)
+                        break;
+                    if (fields.size() == 1 && fields.get(0).isBlank())
+                        continue;
+                } else {
+                    line = reader.readLine();
+                    if (line == null)
+                        break;
+                    if (line.isBlank())
+                        continue;
+                }
+                position++;
+                if (position <= skip)
+                    continue;
+                try {
+                    rows.add(csv ? csvRow(fields, columns) : jsonRow(line));
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    System.err.println("record " + position + " skipped: " + e.getMessage());
+                }
+                if (rows.size() == batchSize) {
+                    if (!offer(queue, new Batch(rows, position, skipped)))
+                        return;
+                    rows = new ArrayList<>(batchSize);
+                    skipped = 0;
+                }
+            }
+            if (!rows.isEmpty() || skipped > 0)
+                offer(queue, new Batch(rows, position, skipped));
+        }
+    }
+
+    /**
+     * read csv header
+     *
+     * @return column name to index
+     */
+    private static Map<String, Integer> header(BufferedReader reader) throws IOException {
+        List<String> fields = Csv.read(reader);
+        HashMap<String, Integer> columns = new HashMap<>();
+        if (fields != null) {
+            for (int i = 0; i < fields.size(); i++) {
+                columns.put(fields.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        if (!columns.containsKey("name"))
+            throw new IOException("csv header must have a name column");
+        return columns;
+    }
+
+    private static Row csvRow(List<String> fields, Map<String, Integer> columns) {
+        Function<String, String> field = (column) -> {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? "" : fields.get(index);
+        };
+        return row(field.apply("name"), field.apply("instructions"),
+                names(field.apply("categories")), names(field.apply("ingredients")));
+    }
+
+    private static Row jsonRow(String line) {
+        Map<String, Object> object = Json.parseObject(line);
+        Object name = object.get("name");
+        Object instructions = object.get("instructions");
+        return row(name == null ? "" : name.toString(), instructions == null ? "" : instructions.toString(),
+                names(object.get("categories")), names(object.get("ingredients")));
+    }
+
+    private static Row row(String name, String instructions, List<String> categories, List<String> ingredients) {
+        if (name.isBlank())
+            throw new IllegalArgumentException("recipe name is empty");
+        return new Row(name, instructions, categories, ingredients);
+    }
+
+    /**
+     * distinct not blank names of a text with separators or a json array
+     */
+    private static List<String> names(Object value) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        if (value instanceof Collection<?> collection) {
+            collection.forEach((name) -> {
+                if (name != null && !name.toString().isBlank())
+                    names.add(name.toString().trim());
+            });
+        } else if (value != null) {
+            for (String name : split(value.toString())) {
+                if (!name.isBlank())
+                    names.add(name.trim());
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * split names text on separators that are not escaped
+     */
+    private static List<String> split(String text) {
+        ArrayList<String> names = new ArrayList<>();
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == NAME_ESCAPE.charAt(0) && i + 1 < text.length()
+                    && (text.charAt(i + 1) == NAME_SEPARATOR.charAt(0) || text.charAt(i + 1) == NAME_ESCAPE.charAt(0))) {
+                name.append(text.charAt(++i));
+            } else if (c == NAME_SEPARATOR.charAt(0)) {
+                names.add(name.toString());
+                name.setLength(0);
+            } else {
+                name.append(c);
+            }
+        }
+        names.add(name.toString());
+        return names;
+    }
+
+    /**
+     * load whole name table in memory dictionary
+     */
+    private static void loadNames(String table, HashMap<String, Integer> ids) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select id,name from " + table)) {
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                ids.put(result.getString(2), result.getInt(1));
+            }
+            result.close();
+        }
+    }
+
+    /**
+     * ids of names of batch that are not in dictionary yet, new names are inserted. ids are not added to
+     * dictionary, they only become valid when transaction of batch is committed
+     *
+     * @return name to id of names that are missing in dictionary
+     */
+    private static HashMap<String, Integer> resolve(String table, List<Row> rows, Function<Row, List<String>> namesOf, HashMap<String, Integer> ids) throws SQLException {
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+        for (Row row : rows) {
+            for (String name : namesOf.apply(row)) {
+                if (!ids.containsKey(name))
+                    missing.add(name);
+            }
+        }
+        return missing.isEmpty() ? new HashMap<>() : Names.resolve(table, missing);
+    }
+
+    /**
+     * id of name from dictionary or from names added by current batch
+     */
+    private static int idOf(String name, HashMap<String, Integer> ids, HashMap<String, Integer> staged) {
+        Integer id = ids.get(name);
+        return id != null ? id : staged.get(name);
+    }
+
+    /**
+     * drop trigger that indexes text of each inserted recipe, index is rebuilt once at end of import
+     */
+    private static void pauseTextIndex() throws SQLException {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("drop trigger if exists recipes_fts_after_insert");
+        }
+    }
+
+    /**
+     * create text index trigger again and index recipes inserted since trigger was dropped with one statement,
+     * much faster than the trigger run for each imported row
+     *
+     * @param afterId last recipe id that was indexed before trigger was dropped
+     */
+    private static void restoreTextIndex(long afterId) throws SQLException {
+        DBConnection.inTransaction(() -> {
+            try (Statement statement = DBConnection.getStatment()) {
+                statement.execute(Migrations.FTS_INSERT_TRIGGER);
+            }
+            try (PreparedStatement statement = DBConnection.prepareStatment("insert into recipes_fts(docid,name,instructions) select id,name,instructions from recipes where id>?")) {
+                statement.setLong(1, afterId);
+                statement.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * restore text index of an import that was killed before it could index its recipes, imported range is not
+     * known then so whole index is rebuilt
+     */
+    public static void recoverTextIndex() throws SQLException {
+        boolean paused;
+        try (PreparedStatement statement = DBConnection.prepareStatment("select count(*) from sqlite_master where type='trigger' and name='recipes_fts_after_insert'")) {
+            ResultSet result = statement.executeQuery();
+            paused = result.next() && result.getInt(1) == 0;
+            result.close();
+        }
+        if (paused) {
+            DBConnection.inTransaction(() -> {
+                try (Statement statement = DBConnection.getStatment()) {
+                    statement.execute(Migrations.FTS_INSERT_TRIGGER);
+                    statement.execute("insert into recipes_fts(recipes_fts) values('rebuild')");
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * insert rows of batch with explicit ids and save position of batch in one transaction
+     */
+    private void write(Batch batch, String source, long size, long imported) throws SQLException {
+        DBConnection.inTransaction(() -> {
+            HashMap<String, Integer> newCategories = resolve("categories", batch.rows(), Row::categories, categoryIds);
+            HashMap<String, Integer> newIngredients = resolve("ingredients", batch.rows(), Row::ingredients, ingredientIds);
+            int id = lastRecipeId();
+            try (PreparedStatement recipes = DBConnection.prepareStatment("insert into recipes (id,name,instructions) values(?,?,?)");
+                 PreparedStatement categories = DBConnection.prepareStatment("insert or ignore into recipes_categories (recipe_id,category_id) values(?,?)");
+                 PreparedStatement ingredients = DBConnection.prepareStatment("insert or ignore into recipes_ingredients (recipe_id,ingredient_id) values(?,?)")) {
+                for (Row row : batch.rows()) {
+                    id++;
+                    recipes.setInt(1, id);
+                    recipes.setString(2, row.name());
+                    recipes.setString(3, row.instructions());
+                    recipes.addBatch();
+                    for (String category : row.categories()) {
+                        categories.setInt(1, id);
+                        categories.setInt(2, idOf(category, categoryIds, newCategories));
+                        categories.addBatch();
+                    }
+                    for (String ingredient : row.ingredients()) {
+                        ingredients.setInt(1, id);
+                        ingredients.setInt(2, idOf(ingredient, ingredientIds, newIngredients));
+                        ingredients.addBatch();
+                    }
+                }
+                recipes.executeBatch();
+                categories.executeBatch();
+                ingredients.executeBatch();
+            }
+            saveProgress(source, size, batch.position(), imported, false);
+            DBConnection.afterCommit(() -> { // names of a rolled back batch are not in database
+                categoryIds.putAll(newCategories);
+                ingredientIds.putAll(newIngredients);
+            });
+            return null;
+        });
+    }
+
+    /**
+     * last recipe id autoincrement has given, ids of deleted recipes are never used again. sqlite moves
+     * sqlite_sequence past explicit ids that are larger
+     */
+    private static int lastRecipeId() throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select max(coalesce((select seq from sqlite_sequence where name='recipes'),0),coalesce((select max(id) from recipes),0))")) {
+            ResultSet result = statement.executeQuery();
+            int id = result.next() ? result.getInt(1) : 0;
+            result.close();
+            return id;
+        }
+    }
+
+    /**
+     * progress saved by an earlier run, an earlier run of a file with another size is ignored
+     *
+     * @return position, imported and done flag
+     */
+    private static long[] savedProgress(String source, long size) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select size,position,imported,done from import_progress where source=?")) {
+            statement.setString(1, source);
+            ResultSet result = statement.executeQuery();
+            long[] progress = {0, 0, 0};
+            if (result.next() && result.getLong("size") == size)
+                progress = new long[]{result.getLong("position"), result.getLong("imported"), result.getInt("done")};
+            result.close();
+            return progress;
+        }
+    }
+
+    private static void saveProgress(String source, long size, long position, long imported, boolean done) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("insert or replace into import_progress (source,size,position,imported,done) values(?,?,?,?,?)")) {
+            DBConnection.bind(statement, source, size, position, imported, done ? 1 : 0);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package db.models;
+
+import db.DBConnection;
+import db.index.RecipeIndex;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * search in recipes by categories and ingredients names. when {@link RecipeIndex} is built matching ids are
+ * looked up in its bitmaps, otherwise matching recipes are selected by one sql statement
+ */
+public class RecipeSearch {
+    /**
+     * how a recipe has to match a list of names
+     */
+    public enum Match {
+        /**
+         * recipe has every given name
+         */
+        ALL,
+        /**
+         * recipe has at least one of given names
+         */
+        ANY,
+        /**
+         * recipe has none of given names
+         */
+        NONE;
+
+        /**
+         * match of user text, any when text is not all or none
+         *
+         * @param text all, any or none in any case
+         * @return match
+         */
+        public static Match parse(String text) {
+            if ("all".equalsIgnoreCase(text))
+                return ALL;
+            return "none".equalsIgnoreCase(text) ? NONE : ANY;
+        }
+    }
+
+    private final LinkedHashSet<String> categories = new LinkedHashSet<>();
+    private final LinkedHashSet<String> ingredients = new LinkedHashSet<>();
+    private Match categoriesMatch = Match.ANY;
+    private Match ingredientsMatch = Match.ANY;
+
+    /**
+     * filter recipes by categories names
+     *
+     * @param match ALL or ANY of names
+     * @param names categories names
+     * @return this search
+     */
+    public RecipeSearch categories(Match match, Collection<String> names) {
+        categoriesMatch = match;
+        categories.addAll(names);
+        return this;
+    }
+
+    /**
+     * filter recipes by ingredients names
+     *
+     * @param match ALL or ANY of names
+     * @param names ingredients names
+     * @return this search
+     */
+    public RecipeSearch ingredients(Match match, Collection<String> names) {
+        ingredientsMatch = match;
+        ingredients.addAll(names);
+        return this;
+    }
+
+    /**
+     * run search, a search without names returns all recipes
+     *
+     * @return matching recipes with their categories and ingredients ordered by id
+     */
+    public ArrayList<Recipe> find() {
+        if (RecipeIndex.isBuilt()) {
+            RecipeIndex.Query query = indexQuery();
+            return query == null ? new ArrayList<>() : Recipe.findAll(query.ids());
+        }
+        ArrayList<Object> params = new ArrayList<>();
+        String filter = filter(params);
+        return Recipe.load(filter, params.toArray());
+    }
+
+    /**
+     * run search for one page of matching recipes
+     *
+     * @param afterId page starts after this recipe id, 0 for first page
+     * @param limit   max count of recipes in page
+     * @return matching recipes with their categories and ingredients ordered by id
+     */
+    public ArrayList<Recipe> page(int afterId, int limit) {
+        if (RecipeIndex.isBuilt()) {
+            RecipeIndex.Query query = indexQuery();
+            return query == null ? new ArrayList<>() : Recipe.findAll(query.ids(afterId, limit));
+        }
+        ArrayList<Object> params = new ArrayList<>();
+        String filter = filter(params);
+        params.add(afterId);
+        params.add(limit);
+        return Recipe.load("id in (select id from recipes where " + (filter == null ? "" : filter + " and ") + "id>? order by id limit ?)", params.toArray());
+    }
+
+    /**
+     * lookup on index for this search, names are resolved to ids with one query per name table
+     *
+     * @return index query or null when names could not be resolved
+     */
+    private RecipeIndex.Query indexQuery() {
+        try {
+            RecipeIndex.Query query = RecipeIndex.query();
+            if (!categories.isEmpty()) {
+                int[] ids = ids("categories", categories);
+                switch (categoriesMatch) {
+                    case ALL -> query.allCategories(ids);
+                    case ANY -> query.anyCategories(ids);
+                    case NONE -> query.noCategories(ids);
+                }
+            }
+            if (!ingredients.isEmpty()) {
+                int[] ids = ids("ingredients", ingredients);
+                switch (ingredientsMatch) {
+                    case ALL -> query.allIngredients(ids);
+                    case ANY -> query.anyIngredients(ids);
+                    case NONE -> query.noIngredients(ids);
+                }
+            }
+            return query;
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * ids of names, a name that is not in table gets id 0 that no row has so it matches no recipe
+     */
+    private static int[] ids(String table, Collection<String> names) throws SQLException {
+        HashMap<String, Integer> ids = Names.find(table, names);
+        return names.stream().mapToInt((name) -> ids.getOrDefault(name, 0)).toArray();
+    }
+
+    /**
+     * where clause on recipes table for this search
+     *
+     * @param params receives values of placeholders in order
+     * @return where clause or null when there is no filter
+     */
+    String filter(ArrayList<Object> params) {
+        ArrayList<String> conditions = new ArrayList<>();
+        if (!categories.isEmpty())
+            conditions.add(condition("recipes_categories", "category_id", "categories", categoriesMatch, categories, params));
+        if (!ingredients.isEmpty())
+            conditions.add(condition("recipes_ingredients", "ingredient_id", "ingredients", ingredientsMatch, ingredients, params));
+        return conditions.isEmpty() ? null : String.join(" and ", conditions);
+    }
+
+    /**
+     * condition on recipe id for one link table, ALL is a group by with count of matched names
+     */
+    private static String condition(String linkTable, String linkColumn, String nameTable, Match match, Collection<String> names, ArrayList<Object> params) {
+        StringBuilder builder = new StringBuilder(match == Match.NONE ? "id not in" : "id in").append(" (select recipe_id from ")
+                .append(linkTable).append(" join ").append(nameTable).append(" on ").append(nameTable).append(".id=").append(linkColumn)
+                .append(" where name in ").append(DBConnection.placeholders(names.size()));
+        params.addAll(names);
+        if (match == Match.ALL) {
+            builder.append(" group by recipe_id having count(distinct ").append(linkColumn).append(")=?");
+            params.add(names.size());
+        }
+        return builder.append(")").toString();
+    }
+}
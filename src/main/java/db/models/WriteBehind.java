@@ -0,0 +1,290 @@
+package db.models;
+
+import db.DBConfig;
+import db.DBConnection;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * asynchronous model writes. operations wait in a bounded queue and one writer thread runs them
+ * in groups, each group in one transaction so many writes share one commit.
+ * <p>
+ * settings (recipe.db.writeBehind.*): capacity of queue, batch size of a group, linger millis to wait
+ * for more operations of a group, timeout millis a caller waits when queue is full and durability
+ */
+public abstract class WriteBehind {
+    /**
+     * kind of queued operation, FLUSH and STOP are markers without model
+     */
+    enum Kind {SAVE, UPDATE, DELETE, FLUSH, STOP}
+
+    /**
+     * when future of an operation is completed
+     */
+    public enum Durability {
+        /**
+         * when operation ran in its group, before commit. fastest, a crash or failed commit can lose it
+         */
+        WRITTEN,
+        /**
+         * when group is committed with synchronous setting of profile
+         */
+        COMMITTED,
+        /**
+         * when group is committed with synchronous=full, survives power loss
+         */
+        SYNCED
+    }
+
+    private record Operation(Model model, Kind kind, CompletableFuture<Integer> future) {
+    }
+
+    private static final int capacity = Integer.parseInt(DBConfig.setting("writeBehind.capacity", "10000"));
+    // read again by open() of each connection
+    private static int batchSize;
+    private static long lingerMillis;
+    private static long timeoutMillis;
+    private static Durability durability;
+
+    private static final BlockingQueue<Operation> queue = new ArrayBlockingQueue<>(capacity);
+    private static Thread writer;
+    private static boolean closed = true;
+    private static boolean hooked = false;
+
+    /**
+     * queue an operation, waits up to timeout when queue is full
+     *
+     * @param model model to write
+     * @param kind  operation
+     * @return future of model id, completed exceptionally when operation failed or was rejected
+     */
+    static CompletableFuture<Integer> submit(Model model, Kind kind) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        if (!start()) {
+            future.completeExceptionally(new RejectedExecutionException("write behind queue is shut down"));
+            return future;
+        }
+        try {
+            if (!queue.offer(new Operation(model, kind, future), timeoutMillis, TimeUnit.MILLISECONDS))
+                future.completeExceptionally(new RejectedExecutionException("write behind queue is full"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * wait until all operations queued before are done
+     */
+    public static void flush() {
+        if (!isStarted())
+            return;
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        try {
+            queue.put(new Operation(null, Kind.FLUSH, future));
+            future.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * accept operations again, called when database is connected. settings other than capacity are read again,
+     * a writer that is still running keeps its settings until shutdown
+     */
+    public static synchronized void open() {
+        if (writer == null) {
+            batchSize = Integer.parseInt(DBConfig.setting("writeBehind.batch", "1000"));
+            lingerMillis = Long.parseLong(DBConfig.setting("writeBehind.linger", "2"));
+            timeoutMillis = Long.parseLong(DBConfig.setting("writeBehind.timeout", "5000"));
+            durability = Durability.valueOf(DBConfig.setting("writeBehind.durability", Durability.COMMITTED.name()).toUpperCase(Locale.ROOT));
+        }
+        closed = false;
+    }
+
+    /**
+     * stop accepting operations, write queued ones and stop writer thread
+     */
+    public static synchronized void shutdown() {
+        closed = true;
+        if (writer == null)
+            return;
+        try {
+            queue.put(new Operation(null, Kind.STOP, new CompletableFuture<>()));
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * count of operations waiting in queue
+     *
+     * @return queue size
+     */
+    public static int pending() {
+        return queue.size();
+    }
+
+    private static synchronized boolean isStarted() {
+        return writer != null;
+    }
+
+    /**
+     * start writer thread on first operation
+     *
+     * @return false if queue is shut down or database is not connected yet
+     */
+    private static synchronized boolean start() {
+        if (closed)
+            return false;
+        if (writer == null) {
+            writer = new Thread(WriteBehind::run, "recipe-write-behind");
+            writer.setDaemon(true);
+            writer.start();
+            if (!hooked) { // one hook for all connections of process
+                Runtime.getRuntime().addShutdownHook(new Thread(WriteBehind::shutdown, "recipe-write-behind-shutdown"));
+                hooked = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * writer thread, takes a group of operations that are queued together and writes them
+     */
+    private static void run() {
+        ArrayList<Operation> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+                while (group.size() < batchSize && group.get(group.size() - 1).model() != null) {
+                    Operation next = queue.poll(lingerMillis, TimeUnit.MILLISECONDS);
+                    if (next == null)
+                        break;
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            write(group);
+            boolean stop = group.stream().anyMatch((operation) -> operation.kind() == Kind.STOP);
+            group.clear();
+            if (stop)
+                return;
+        }
+    }
+
+    /**
+     * write operations of a group, an operation that makes group transaction fail is left out and group is written again
+     */
+    private static void write(List<Operation> group) {
+        ArrayList<Operation> pending = new ArrayList<>();
+        for (Operation operation : group) {
+            if (operation.model() != null)
+                pending.add(operation);
+        }
+        while (!pending.isEmpty()) {
+            Operation failed = writeGroup(pending);
+            if (failed == null)
+                break;
+            failed.future().completeExceptionally(new SQLException(failed.kind().name().toLowerCase(Locale.ROOT) + " of "
+                    + failed.model().getClass().getSimpleName() + " failed"));
+            pending.remove(failed);
+        }
+        group.forEach((operation) -> {
+            if (operation.model() == null)
+                operation.future().complete(0);
+        });
+    }
+
+    /**
+     * run operations in one transaction, when commit fails each operation is written in its own transaction
+     *
+     * @return operation that rolled back its part of transaction, null when group is done
+     */
+    private static Operation writeGroup(List<Operation> operations) {
+        try {
+            if (durability == Durability.SYNCED)
+                synchronous("full");
+            DBConnection.beginTransaction();
+            IdentityHashMap<Model, Kind> last = new IdentityHashMap<>();
+            for (Operation operation : operations) {
+                if (operation.kind() == Kind.UPDATE && last.get(operation.model()) == Kind.UPDATE)
+                    continue; // model is already written with its current state in this group
+                if (!execute(operation))
+                    return operation;
+                last.put(operation.model(), operation.kind());
+                if (durability == Durability.WRITTEN)
+                    complete(operation);
+            }
+            DBConnection.commit();
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            DBConnection.rollback();
+            if (operations.size() > 1) {
+                operations.forEach((operation) -> write(List.of(operation)));
+                return null;
+            }
+            return operations.get(0);
+        } finally {
+            if (durability == Durability.SYNCED)
+                synchronous(DBConnection.getConfig().getPragmas().get("synchronous"));
+        }
+        operations.forEach(WriteBehind::complete);
+        return null;
+    }
+
+    /**
+     * run model operation in group transaction, a failed operation rolls back whole transaction
+     *
+     * @return true if operation did not fail group
+     */
+    private static boolean execute(Operation operation) {
+        try {
+            switch (operation.kind()) {
+                case SAVE -> operation.model().save();
+                case UPDATE -> operation.model().update();
+                case DELETE -> operation.model().delete();
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            while (DBConnection.isInTransaction()) { // leave transactions that model method left open
+                DBConnection.rollback();
+            }
+            return false;
+        }
+        if (DBConnection.isRollbackOnly()) {
+            DBConnection.rollback();
+            return false;
+        }
+        return true;
+    }
+
+    private static void complete(Operation operation) {
+        if (operation.kind() == Kind.SAVE && operation.model().getId() == 0)
+            operation.future().completeExceptionally(new SQLException("save of " + operation.model().getClass().getSimpleName() + " failed"));
+        else
+            operation.future().complete(operation.model().getId());
+    }
+
+    private static void synchronous(String value) {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("pragma synchronous=" + value);
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
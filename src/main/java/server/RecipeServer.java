@@ -0,0 +1,468 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import db.DBConfig;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Recipe;
+import db.models.RecipeSearch;
+import service.RecipeService;
+import util.Json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * json api over http for recipes, categories and ingredients.
+ * <pre>
+ * GET    /recipes?after=0&amp;limit=50             page of recipes in id order, next is after value of next page
+ * GET    /recipes/search?q=words&amp;page=0&amp;size=20 ranked full text search
+ * GET    /recipes/search?categories=a,b&amp;ingredients=c&amp;match=all|any|none&amp;after=0&amp;size=20 page of recipes in id order
+ * GET    /recipes/{id}
+ * POST   /recipes           {"name","instructions","categories":[names],"ingredients":[names]}
+ * PUT    /recipes/{id}      same fields, missing fields are kept
+ * DELETE /recipes/{id}
+ * GET    /categories, /categories/{id}, POST, PUT {"name"}, DELETE
+ * GET    /categories/{id}/recipes?after=0&amp;size=20  page of recipes in id order
+ * GET    /ingredients, /ingredients/{id}, POST, PUT {"name"}
+ * GET    /ingredients/{id}/recipes?after=0&amp;size=20 page of recipes in id order
+ * </pre>
+ * pages of recipes by id are {"items":[...],"next":id}, next is after value of next page
+ * lists are written to response while they are serialized, errors are {"error": message}
+ */
+public class RecipeServer {
+    private static final int MAX_LIMIT = 1000;
+
+    private final HttpServer server;
+    private final RecipeService service;
+    private final ExecutorService executor;
+
+    /**
+     * error with http status
+     */
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * handler of one request that may throw
+     */
+    @FunctionalInterface
+    private interface Route {
+        void handle(HttpExchange exchange, String[] path) throws Exception;
+    }
+
+    /**
+     * @param port port to listen on, 0 for any free port
+     */
+    public RecipeServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        service = new RecipeService();
+        ExecutorService virtual = RecipeService.virtualThreadExecutor();
+        executor = virtual != null ? virtual : Executors.newFixedThreadPool(Integer.parseInt(DBConfig.setting("server.threads", "32")));
+        server.setExecutor(executor);
+        server.createContext("/recipes", handler(this::recipes));
+        server.createContext("/categories", handler(this::categories));
+        server.createContext("/ingredients", handler(this::ingredients));
+    }
+
+    /**
+     * start listening
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * stop listening, running requests get up to given seconds to finish
+     *
+     * @param delay seconds to wait
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        service.close();
+        executor.shutdown();
+    }
+
+    /**
+     * port server listens on
+     *
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static HttpHandler handler(Route route) {
+        return (exchange) -> {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                String[] parts = path.replaceAll("^/+|/+$", "").split("/+");
+                route.handle(exchange, parts);
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                int status = cause instanceof HttpError error ? error.status : cause instanceof RejectedExecutionException ? 503 : 409;
+                sendError(exchange, status, cause.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (Exception e) {
+                sendError(exchange, 500, String.valueOf(e.getMessage()));
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void recipes(HttpExchange exchange, String[] path) throws Exception {
+        String method = exchange.getRequestMethod();
+        if (path.length == 1) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> query = query(exchange);
+                    int limit = limit(query);
+                    sendPage(exchange, service.listPage(intParam(query, "after", 0), limit).join(), limit, Recipe::getId, RecipeServer::recipeJson);
+                }
+                case "POST" -> {
+                    Map<String, Object> body = body(exchange);
+                    Recipe recipe = new Recipe(requiredText(body, "name"), text(body, "instructions", ""),
+                            names(body.get("categories"), Category::new), names(body.get("ingredients"), Ingredient::new));
+                    int id = service.create(recipe).join();
+                    send(exchange, 201, Map.of("id", id));
+                }
+                default -> throw new HttpError(405, "method not allowed");
+            }
+            return;
+        }
+        segments(path, 2);
+        if (path[1].equals("search")) {
+            allow(exchange, "GET");
+            Map<String, String> query = query(exchange);
+            int size = size(query);
+            if (query.containsKey("q")) {
+                int page = intParam(query, "page", 0);
+                if (page < 0)
+                    throw new IllegalArgumentException("page must not be negative");
+                sendList(exchange, service.search(query.get("q"), page, size).join(), RecipeServer::recipeJson);
+                return;
+            }
+            if (split(query.get("categories")).isEmpty() && split(query.get("ingredients")).isEmpty())
+                throw new IllegalArgumentException("q, categories or ingredients is required");
+            RecipeSearch.Match match = RecipeSearch.Match.parse(query.get("match"));
+            RecipeSearch search = new RecipeSearch()
+                    .categories(match, split(query.get("categories")))
+                    .ingredients(match, split(query.get("ingredients")));
+            sendPage(exchange, service.search(search, intParam(query, "after", 0), size).join(), size, Recipe::getId, RecipeServer::recipeJson);
+            return;
+        }
+        int id = id(path[1]);
+        switch (method) {
+            case "GET" -> send(exchange, 200, recipeJson(found(service.findById(id).join())));
+            case "PUT" -> {
+                Recipe recipe = found(service.findById(id).join());
+                Map<String, Object> body = body(exchange);
+                recipe.setName(text(body, "name", recipe.getName()));
+                recipe.setInstructions(text(body, "instructions", recipe.getInstructions()));
+                if (body.containsKey("categories"))
+                    recipe.setCategories(names(body.get("categories"), Category::new));
+                if (body.containsKey("ingredients"))
+                    recipe.setIngredients(names(body.get("ingredients"), Ingredient::new));
+                service.update(recipe).join();
+                send(exchange, 200, recipeJson(found(service.findById(id).join())));
+            }
+            case "DELETE" -> {
+                service.delete(found(service.findById(id).join())).join();
+                send(exchange, 204, null);
+            }
+            default -> throw new HttpError(405, "method not allowed");
+        }
+    }
+
+    private void categories(HttpExchange exchange, String[] path) throws Exception {
+        String method = exchange.getRequestMethod();
+        if (path.length == 1) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> query = query(exchange);
+                    int limit = limit(query);
+                    sendPage(exchange, service.listCategories(intParam(query, "after", 0), limit).join(), limit, Category::getId,
+                            (category) -> nameJson(category.getId(), category.getName()));
+                }
+                case "POST" -> send(exchange, 201, Map.of("id", service.create(new Category(requiredText(body(exchange), "name"))).join()));
+                default -> throw new HttpError(405, "method not allowed");
+            }
+            return;
+        }
+        segments(path, path.length == 3 && path[2].equals("recipes") ? 3 : 2);
+        int id = id(path[1]);
+        if (path.length == 3) {
+            allow(exchange, "GET");
+            Map<String, String> query = query(exchange);
+            int size = size(query);
+            sendPage(exchange, service.categoryRecipes(id, intParam(query, "after", 0), size).join(), size, Recipe::getId, RecipeServer::recipeJson);
+            return;
+        }
+        Category category = found(service.findCategory(id).join());
+        switch (method) {
+            case "GET" -> send(exchange, 200, nameJson(category.getId(), category.getName()));
+            case "PUT" -> { // cached instance is shared with other readers, update a copy
+                Category updated = new Category(id, requiredText(body(exchange), "name"));
+                service.update(updated).join();
+                send(exchange, 200, nameJson(updated.getId(), updated.getName()));
+            }
+            case "DELETE" -> {
+                service.delete(new Category(id, category.getName())).join();
+                send(exchange, 204, null);
+            }
+            default -> throw new HttpError(405, "method not allowed");
+        }
+    }
+
+    private void ingredients(HttpExchange exchange, String[] path) throws Exception {
+        String method = exchange.getRequestMethod();
+        if (path.length == 1) {
+            switch (method) {
+                case "GET" -> {
+                    Map<String, String> query = query(exchange);
+                    int limit = limit(query);
+                    sendPage(exchange, service.listIngredients(intParam(query, "after", 0), limit).join(), limit, Ingredient::getId,
+                            (ingredient) -> nameJson(ingredient.getId(), ingredient.getName()));
+                }
+                case "POST" -> send(exchange, 201, Map.of("id", service.create(new Ingredient(requiredText(body(exchange), "name"))).join()));
+                default -> throw new HttpError(405, "method not allowed");
+            }
+            return;
+        }
+        segments(path, path.length == 3 && path[2].equals("recipes") ? 3 : 2);
+        int id = id(path[1]);
+        if (path.length == 3) {
+            allow(exchange, "GET");
+            Map<String, String> query = query(exchange);
+            int size = size(query);
+            sendPage(exchange, service.ingredientRecipes(id, intParam(query, "after", 0), size).join(), size, Recipe::getId, RecipeServer::recipeJson);
+            return;
+        }
+        Ingredient ingredient = found(service.findIngredient(id).join());
+        switch (method) {
+            case "GET" -> send(exchange, 200, nameJson(ingredient.getId(), ingredient.getName()));
+            case "PUT" -> {
+                Ingredient updated = new Ingredient(id, requiredText(body(exchange), "name"));
+                service.update(updated).join();
+                send(exchange, 200, nameJson(updated.getId(), updated.getName()));
+            }
+            default -> throw new HttpError(405, "ingredients can not be deleted");
+        }
+    }
+
+    private static Map<String, Object> recipeJson(Recipe recipe) {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("id", recipe.getId());
+        json.put("name", recipe.getName());
+        json.put("instructions", recipe.getInstructions());
+        ArrayList<Object> categories = new ArrayList<>();
+        recipe.getCategories().forEach((category) -> categories.add(nameJson(category.getId(), category.getName())));
+        json.put("categories", categories);
+        ArrayList<Object> ingredients = new ArrayList<>();
+        recipe.getIngredients().forEach((ingredient) -> ingredients.add(nameJson(ingredient.getId(), ingredient.getName())));
+        json.put("ingredients", ingredients);
+        return json;
+    }
+
+    private static Map<String, Object> nameJson(int id, String name) {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    private static <T> T found(T model) {
+        if (model == null)
+            throw new HttpError(404, "not found");
+        return model;
+    }
+
+    /**
+     * fail with not found when path has more segments than route knows, like /recipes/1/anything
+     */
+    private static void segments(String[] path, int max) {
+        if (path.length > max)
+            throw new HttpError(404, "not found");
+    }
+
+    private static void allow(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method))
+            throw new HttpError(405, "method not allowed");
+    }
+
+    private static int id(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "not found");
+        }
+    }
+
+    private static int limit(Map<String, String> query) {
+        return Math.max(1, Math.min(MAX_LIMIT, intParam(query, "limit", 50)));
+    }
+
+    private static int size(Map<String, String> query) {
+        return Math.max(1, Math.min(MAX_LIMIT, intParam(query, "size", 20)));
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        HashMap<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null)
+            return query;
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static List<String> split(String names) {
+        ArrayList<String> list = new ArrayList<>();
+        if (names != null) {
+            for (String name : names.split(",")) {
+                if (!name.isBlank())
+                    list.add(name.trim());
+            }
+        }
+        return list;
+    }
+
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            return Json.parseObject(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String text(Map<String, Object> body, String name, String defaultValue) {
+        Object value = body.get(name);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    private static String requiredText(Map<String, Object> body, String name) {
+        String value = text(body, name, "");
+        if (value.isBlank())
+            throw new IllegalArgumentException(name + " is required");
+        return value;
+    }
+
+    /**
+     * models of a json array of names
+     */
+    private static <T> ArrayList<T> names(Object value, Function<String, T> create) {
+        ArrayList<T> models = new ArrayList<>();
+        if (value instanceof Collection<?> names) {
+            for (Object name : names) {
+                if (name != null && !name.toString().isBlank())
+                    models.add(create.apply(name.toString().trim()));
+            }
+        } else if (value != null) {
+            throw new IllegalArgumentException("array of names expected");
+        }
+        return models;
+    }
+
+    private static void send(HttpExchange exchange, int status, Object json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = Json.write(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, Map.of("error", message == null ? "" : message));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * write items as a json array, each item is written as it is serialized with chunked encoding
+     */
+    private static <T> void sendList(HttpExchange exchange, List<T> items, Function<T, Object> json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        writer.write('[');
+        writeItems(writer, items, json);
+        writer.write(']');
+        writer.flush();
+    }
+
+    /**
+     * write a keyset page {"items":[...],"next":id} where next is null on last page
+     */
+    private static <T> void sendPage(HttpExchange exchange, List<T> items, int limit, ToIntFunction<T> idOf, Function<T, Object> json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        writer.write("{\"items\":[");
+        writeItems(writer, items, json);
+        writer.write("],\"next\":");
+        writer.write(items.size() < limit ? "null" : String.valueOf(idOf.applyAsInt(items.get(items.size() - 1))));
+        writer.write('}');
+        writer.flush();
+    }
+
+    private static <T> void writeItems(Writer writer, List<T> items, Function<T, Object> json) throws IOException {
+        StringBuilder builder = new StringBuilder(512);
+        for (int i = 0; i < items.size(); i++) {
+            builder.setLength(0);
+            if (i > 0)
+                builder.append(',');
+            Json.write(builder, json.apply(items.get(i)));
+            writer.append(builder);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package service;
+
+import db.DBConfig;
+import db.DBConnection;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Model;
+import db.models.Recipe;
+import db.models.RecipeSearch;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * asynchronous access to recipes for servers. reads run on virtual threads when the runtime has them
+ * (java 21+), otherwise on a bounded pool, and use reader connections of pool. writes go to the single
+ * write behind thread so they are serialized and grouped in transactions.
+ * lookups that find nothing complete with null like the model finders
+ */
+public class RecipeService implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    /**
+     * service on current database connection, pool size of older runtimes is recipe.db.service.threads
+     * and defaults to twice the reader connections
+     */
+    public RecipeService() {
+        ExecutorService virtualExecutor = virtualThreadExecutor();
+        this.virtual = virtualExecutor != null;
+        if (virtual) {
+            this.executor = virtualExecutor;
+        } else {
+            int readers = DBConnection.getConfig() == null ? 4 : DBConnection.getConfig().getReaders();
+            int threads = Integer.parseInt(DBConfig.setting("service.threads", String.valueOf(Math.max(2 * readers, Runtime.getRuntime().availableProcessors()))));
+            this.executor = Executors.newFixedThreadPool(threads, daemonThreads());
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor when it exists, looked up at runtime so code still builds for java 17
+     *
+     * @return executor or null on older runtimes
+     */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return (task) -> {
+            Thread thread = new Thread(task, "recipe-service-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * check if reads run on virtual threads
+     *
+     * @return true on java 21+
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    private <T> CompletableFuture<T> read(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    public CompletableFuture<Recipe> findById(int id) {
+        return read(() -> Recipe.find(id));
+    }
+
+    /**
+     * page of recipes in id order
+     *
+     * @param afterId page starts after this id, 0 for first page
+     * @param limit   max count of recipes
+     * @return future of recipes
+     */
+    public CompletableFuture<ArrayList<Recipe>> listPage(int afterId, int limit) {
+        return read(() -> Recipe.page(afterId, limit));
+    }
+
+    /**
+     * ranked full text search
+     *
+     * @param text     words to search
+     * @param page     page number from 0
+     * @param pageSize recipes per page
+     * @return future of best matching recipes first
+     */
+    public CompletableFuture<ArrayList<Recipe>> search(String text, int page, int pageSize) {
+        return read(() -> Recipe.searchText(text, page, pageSize));
+    }
+
+    /**
+     * search by categories and ingredients names
+     *
+     * @param search  search conditions
+     * @param afterId page starts after this id, 0 for first page
+     * @param limit   max count of recipes
+     * @return future of matching recipes in id order
+     */
+    public CompletableFuture<ArrayList<Recipe>> search(RecipeSearch search, int afterId, int limit) {
+        return read(() -> search.page(afterId, limit));
+    }
+
+    public CompletableFuture<Category> findCategory(int id) {
+        return read(() -> Category.find(id));
+    }
+
+    public CompletableFuture<ArrayList<Category>> listCategories(int afterId, int limit) {
+        return read(() -> Category.page(afterId, limit));
+    }
+
+    public CompletableFuture<ArrayList<Recipe>> categoryRecipes(int id, int afterId, int limit) {
+        return read(() -> Category.getCategoryRecipesPage(id, afterId, limit));
+    }
+
+    public CompletableFuture<Ingredient> findIngredient(int id) {
+        return read(() -> Ingredient.find(id));
+    }
+
+    public CompletableFuture<ArrayList<Ingredient>> listIngredients(int afterId, int limit) {
+        return read(() -> Ingredient.page(afterId, limit));
+    }
+
+    public CompletableFuture<ArrayList<Recipe>> ingredientRecipes(int id, int afterId, int limit) {
+        return read(() -> Ingredient.getIngredientRecipesPage(id, afterId, limit));
+    }
+
+    /**
+     * save a new model on writer thread
+     *
+     * @param model recipe, category or ingredient
+     * @return future of generated id
+     */
+    public CompletableFuture<Integer> create(Model model) {
+        return model.saveAsync();
+    }
+
+    public CompletableFuture<Integer> update(Model model) {
+        return model.updateAsync();
+    }
+
+    public CompletableFuture<Integer> delete(Model model) {
+        return model.deleteAsync();
+    }
+
+    /**
+     * stop read threads after running reads are done
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * minimal csv reader and writer (rfc 4180), fields with comma, quote or line break are quoted
+ * and a quoted field may span lines
+ */
+public final class Csv {
+    private Csv() {
+    }
+
+    /**
+     * read next record
+     *
+     * @param reader csv text
+     * @return fields of record or null at end of text
+     */
+    public static List<String> read(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null)
+            return null;
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i >= line.length()) {
+                if (!quoted)
+                    break;
+                String next = reader.readLine(); // line break inside quoted field
+                if (next == null)
+                    throw new IOException("unterminated quoted field");
+                field.append('\n');
+                line = next;
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else
+                    quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * append a record and a line break to builder
+     *
+     * @param builder csv is appended here
+     * @param fields  values of record
+     */
+    public static void write(StringBuilder builder, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                builder.append(',');
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                builder.append(field);
+                continue;
+            }
+            builder.append('"');
+            for (int j = 0; j < field.length(); j++) {
+                char c = field.charAt(j);
+                if (c == '"')
+                    builder.append('"');
+                builder.append(c);
+            }
+            builder.append('"');
+        }
+        builder.append('\n');
+    }
+}
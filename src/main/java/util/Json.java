@@ -0,0 +1,286 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * minimal json reader and writer, objects are read as LinkedHashMap, arrays as ArrayList,
+ * numbers as Long or Double
+ */
+public final class Json {
+    private final String text;
+    private int position;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * parse one json value
+     *
+     * @param text json text
+     * @return parsed value
+     * @throws IllegalArgumentException if text is not valid json
+     */
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        json.skipSpaces();
+        Object value = json.value();
+        json.skipSpaces();
+        if (json.position != text.length())
+            throw json.error("unexpected text after value");
+        return value;
+    }
+
+    /**
+     * parse a json object
+     *
+     * @param text json text
+     * @return object fields in order
+     * @throws IllegalArgumentException if text is not a json object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map))
+            throw new IllegalArgumentException("json object expected");
+        return (Map<String, Object>) value;
+    }
+
+    private Object value() {
+        if (position >= text.length())
+            throw error("unexpected end of text");
+        char c = text.charAt(position);
+        switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return number();
+                throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        LinkedHashMap<String, Object> object = new LinkedHashMap<>();
+        position++; // {
+        skipSpaces();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipSpaces();
+            if (peek() != '"')
+                throw error("field name expected");
+            String name = string();
+            skipSpaces();
+            expect(':');
+            skipSpaces();
+            object.put(name, value());
+            skipSpaces();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        ArrayList<Object> array = new ArrayList<>();
+        position++; // [
+        skipSpaces();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            skipSpaces();
+            array.add(value());
+            skipSpaces();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String string() {
+        position++; // "
+        StringBuilder builder = new StringBuilder();
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"')
+                return builder.toString();
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (position >= text.length())
+                break;
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length())
+                        throw error("bad unicode escape");
+                    try {
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("bad unicode escape");
+                    }
+                    position += 4;
+                }
+                default -> builder.append(escaped); // \" \\ \/
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private Object number() {
+        int start = position;
+        boolean decimal = false;
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (c == '.' || c == 'e' || c == 'E')
+                decimal = true;
+            else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9')))
+                break;
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            return decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw error("bad number '" + number + "'");
+        }
+    }
+
+    private Object literal(String word, Object value) {
+        if (!text.startsWith(word, position))
+            throw error("unexpected text");
+        position += word.length();
+        return value;
+    }
+
+    private char peek() {
+        if (position >= text.length())
+            throw error("unexpected end of text");
+        return text.charAt(position);
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("'" + c + "' expected");
+        position++;
+    }
+
+    private void skipSpaces() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + position);
+    }
+
+    /**
+     * write value as json, supports maps, iterables, strings, numbers, booleans and null
+     *
+     * @param value value to write
+     * @return json text
+     */
+    public static String write(Object value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * append value as json to builder
+     *
+     * @param builder json is appended here
+     * @param value   value to write
+     */
+    public static void write(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof String string) {
+            quote(builder, string);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first)
+                    builder.append(',');
+                first = false;
+                quote(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                write(builder, entry.getValue());
+            }
+            builder.append('}');
+        } else if (value instanceof Iterable<?> iterable) {
+            builder.append('[');
+            boolean first = true;
+            for (Object item : iterable) {
+                if (!first)
+                    builder.append(',');
+                first = false;
+                write(builder, item);
+            }
+            builder.append(']');
+        } else {
+            quote(builder, value.toString());
+        }
+    }
+
+    /**
+     * append text as a json string with quotes and escapes
+     *
+     * @param builder json is appended here
+     * @param text    text to quote
+     */
+    public static void quote(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        builder.append(String.format("\\u%04x", (int) c));
+                    else
+                        builder.append(c);
+                }
+            }
+        }
+        builder.append('"');
+    }
+}
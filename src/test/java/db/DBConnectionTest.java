@@ -0,0 +1,160 @@
+package db;
+
+import db.index.RecipeIndex;
+import db.models.Category;
+import db.models.Recipe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DBConnectionTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        System.setProperty("recipe.db.pool.timeout", "2000"); // a leaked writer fails test instead of hanging
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+        System.clearProperty("recipe.db.pool.timeout");
+    }
+
+    @Test
+    void joinedUnitsCommitWithOutermost() throws SQLException {
+        AtomicInteger actions = new AtomicInteger();
+        DBConnection.inTransaction(() -> {
+            new Category("outer").save();
+            DBConnection.inTransaction(() -> {
+                new Category("inner").save();
+                DBConnection.afterCommit(actions::incrementAndGet);
+                return null;
+            });
+            assertTrue(DBConnection.isInTransaction());
+            assertEquals(0, actions.get(), "after commit action ran before outermost commit");
+            return null;
+        });
+        assertFalse(DBConnection.isInTransaction());
+        assertEquals(1, actions.get());
+        assertEquals(2, Category.count());
+    }
+
+    @Test
+    void failedJoinedUnitRollsBackWholeUnit() {
+        AtomicInteger actions = new AtomicInteger();
+        assertThrows(SQLException.class, () -> DBConnection.inTransaction(() -> {
+            new Category("outer").save();
+            DBConnection.afterCommit(actions::incrementAndGet);
+            try {
+                DBConnection.inTransaction(() -> {
+                    throw new SQLException("inner failed");
+                });
+            } catch (SQLException e) {
+                assertTrue(DBConnection.isRollbackOnly());
+            }
+            return null;
+        }));
+        assertFalse(DBConnection.isInTransaction());
+        assertEquals(0, actions.get());
+        assertEquals(0, Category.count());
+        assertNull(Category.find("outer"));
+    }
+
+    @Test
+    void failedModelWriteInsideUnitFailsCommit() {
+        assertThrows(SQLException.class, () -> DBConnection.inTransaction(() -> {
+            new Category("duplicate").save();
+            new Category("duplicate").save(); // unique name, model reports error and marks unit rollback only
+            return null;
+        }));
+        assertEquals(0, Category.count());
+    }
+
+    @Test
+    void afterCommitActionsRunBeforeNextCommit() throws Exception {
+        Recipe recipe = new Recipe("soup", "", new ArrayList<>(List.of(new Category("first"))), new ArrayList<>());
+        recipe.save();
+        int id = recipe.getId();
+        CountDownLatch written = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> {
+            try {
+                DBConnection.inTransaction(() -> {
+                    DBConnection.afterCommit(() -> pause(200)); // runs ahead of index update of recipe
+                    relink(id, "slow");
+                    written.countDown();
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        written.await(5, TimeUnit.SECONDS);
+        relink(id, "fast"); // waits for writer of slow unit
+
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("fast"), Recipe.find(id).getCategories().stream().map(Category::getName).toList());
+        assertArrayEquals(new int[]{id}, RecipeIndex.query().anyCategories(Category.find("fast").getId()).ids());
+        assertArrayEquals(new int[0], RecipeIndex.query().anyCategories(Category.find("slow").getId()).ids());
+    }
+
+    @Test
+    void writerIsReleasedAfterRollback() throws Exception {
+        assertThrows(SQLException.class, () -> DBConnection.inTransaction(() -> {
+            throw new SQLException("failed");
+        }));
+        assertFalse(DBConnection.isInTransaction());
+
+        // another thread can write, writer lock is not kept by failed unit
+        CompletableFuture.runAsync(() -> new Category("other thread").save()).get(5, TimeUnit.SECONDS);
+        assertNotNull(Category.find("other thread"));
+    }
+
+    @Test
+    void writerIsReleasedAfterRollbackOnlyCommit() throws Exception {
+        DBConnection.beginTransaction();
+        DBConnection.beginTransaction();
+        DBConnection.rollback(); // joined unit failed
+        assertThrows(SQLException.class, DBConnection::commit);
+        assertFalse(DBConnection.isInTransaction());
+
+        CompletableFuture.runAsync(() -> new Recipe("other thread", "", new ArrayList<>(), new ArrayList<>()).save())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("other thread"), Recipe.all().stream().map(Recipe::getName).toList());
+    }
+
+    /**
+     * set only category of recipe, links are read in transaction of update
+     */
+    private static void relink(int recipeId, String category) {
+        new Recipe(recipeId, "soup", "", new ArrayList<>(List.of(new Category(category))), new ArrayList<>()).update();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void emptyHistogramHasNoPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileNanos(0.99));
+    }
+
+    @Test
+    void percentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.maxNanos());
+        assertEquals(500_500_000, histogram.totalNanos());
+        assertNear(500_000, histogram.percentileNanos(0.5));
+        assertNear(990_000, histogram.percentileNanos(0.99));
+        assertEquals(1_000_000, histogram.percentileNanos(1), "percentile is capped by max");
+    }
+
+    @Test
+    void smallAndNegativeDurationsAreRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentileNanos(0.5));
+        assertEquals(3, histogram.percentileNanos(1));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, expected + " expected, got " + actual);
+    }
+}
@@ -0,0 +1,91 @@
+package db;
+
+import db.index.RecipeIndex;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Recipe;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryBudgetTest {
+    private static final int RECIPES = 30;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() throws SQLException {
+        TestDatabase.connect(dir);
+        DBConnection.inTransaction(() -> {
+            for (int i = 0; i < RECIPES; i++) {
+                new Recipe("recipe " + i, "mix",
+                        new ArrayList<>(List.of(new Category("category " + i % 3), new Category("category " + (i + 1) % 3))),
+                        new ArrayList<>(List.of(new Ingredient("ingredient " + i % 5)))).save();
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void allLoadsRecipesInFixedCountOfQueries() {
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(RECIPES, Recipe.all().size()));
+    }
+
+    @Test
+    void pageLoadsRecipesInFixedCountOfQueries() {
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(20, Recipe.page(0, 20).size()));
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(RECIPES - 20, Recipe.page(20, 20).size()));
+    }
+
+    @Test
+    void categoryRecipesLoadInFixedCountOfQueries() {
+        int categoryId = Category.find("category 0").getId();
+        assertTrue(RecipeIndex.isBuilt());
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(20, Category.getCategoryRecipes(categoryId).size()));
+
+        RecipeIndex.clear(); // lookup goes to link table
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(20, Category.getCategoryRecipes(categoryId).size()));
+    }
+
+    @Test
+    void categoryRecipesPageLoadsOnlyPage() {
+        int categoryId = Category.find("category 0").getId();
+        assertTrue(RecipeIndex.isBuilt());
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(5, Category.getCategoryRecipesPage(categoryId, 0, 5).size()));
+
+        RecipeIndex.clear(); // lookup goes to link table
+        QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> assertEquals(5, Category.getCategoryRecipesPage(categoryId, 0, 5).size()));
+    }
+
+    @Test
+    void loopOfQueriesExceedsBudget() {
+        AssertionError error = assertThrows(AssertionError.class, () -> QueryBudget.assertAtMost(Recipe.LOAD_QUERIES, () -> {
+            for (Recipe recipe : Recipe.page(0, 5)) {
+                recipe.categories();
+            }
+        }));
+        assertTrue(error.getMessage().contains("5 x "), error.getMessage());
+    }
+
+    @Test
+    void countQueriesCountsNestedScopes() {
+        int queries = QueryBudget.countQueries(() -> QueryBudget.within("inner", 1, Recipe::count));
+        assertEquals(1, queries);
+    }
+}
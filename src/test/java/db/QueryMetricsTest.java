@@ -0,0 +1,76 @@
+package db;
+
+import db.cache.IdentityMap;
+import db.models.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryMetricsTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+        QueryMetrics.reset();
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void literalsAndPlaceholderListsShareShape() {
+        assertEquals("select * from recipes where id in (?,...) and name=?",
+                QueryMetrics.normalize("select *  from recipes\n where id in (?, ?, ?) and name='it''s';"));
+        assertEquals(QueryMetrics.normalize("select * from t where id=1"), QueryMetrics.normalize("select * from t where id=42"));
+        assertEquals("select name2 from t?", QueryMetrics.normalize("select name2 from t?"));
+    }
+
+    @Test
+    void statementsAreRecordedByShape() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            new Category("category " + i).save();
+        }
+        IdentityMap.clearAll(); // find reads database
+        for (int i = 1; i <= 3; i++) {
+            Category.find(i);
+        }
+        QueryMetrics.Stats find = stats("select * from categories where id=?");
+        assertEquals(3, find.calls());
+        assertEquals(3, find.rows());
+        assertTrue(find.maxMicros() >= find.p50Micros());
+
+        QueryMetrics.Stats insert = stats("insert into categories (name) values(?)");
+        assertEquals(3, insert.calls());
+        assertEquals(3, insert.rows());
+
+        try (Statement statement = DBConnection.getStatment()) {
+            assertThrows(SQLException.class, () -> statement.execute("select * from missing_table"));
+        }
+        assertEquals(1, stats("select * from missing_table").errors());
+    }
+
+    @Test
+    void resetForgetsShapes() {
+        Category.count();
+        QueryMetrics.reset();
+        assertTrue(QueryMetrics.snapshot().isEmpty());
+    }
+
+    private static QueryMetrics.Stats stats(String sql) {
+        return QueryMetrics.snapshot().stream().filter((stats) -> stats.sql().equals(sql)).findFirst()
+                .orElseThrow(() -> new AssertionError(sql + " not in " + QueryMetrics.snapshot()));
+    }
+}
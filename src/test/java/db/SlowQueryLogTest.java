@@ -0,0 +1,110 @@
+package db;
+
+import db.models.Recipe;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class SlowQueryLogTest {
+    @TempDir
+    static Path dir;
+
+    @BeforeAll
+    static void connect() {
+        // threshold is read once per jvm, every statement of this test class is slow
+        System.setProperty("recipe.db.slowQuery.threshold", "0");
+        System.setProperty("recipe.db.slowQuery.file", dir.resolve("slow.%g.log").toString());
+        TestDatabase.connect(dir);
+        new Recipe("soup", "boil", new ArrayList<>(), new ArrayList<>()).save();
+    }
+
+    @AfterAll
+    static void close() {
+        TestDatabase.close();
+        System.clearProperty("recipe.db.slowQuery.threshold");
+        System.clearProperty("recipe.db.slowQuery.file");
+    }
+
+    @Test
+    void tableScanIsLoggedWithParamsAndPlan() throws Exception {
+        long scans = SlowQueryLog.scans();
+        query("select id from recipes where instructions=?", "boil");
+        String entry = awaitEntry("select id from recipes where instructions=?");
+        assertTrue(entry.contains("params: ['boil']"), entry);
+        assertTrue(entry.contains("plan: SCAN"), entry);
+        assertTrue(header(entry).contains(" SCAN "), entry);
+        assertTrue(SlowQueryLog.scans() > scans);
+    }
+
+    @Test
+    void indexLookupIsLoggedAsSearch() throws Exception {
+        query("select name from recipes where id=?", 1);
+        String entry = awaitEntry("select name from recipes where id=?");
+        assertTrue(header(entry).contains(" SEARCH "), entry);
+        assertTrue(entry.contains("params: [1]"), entry);
+    }
+
+    @Test
+    void paramsAreThoseOfExecution() throws Exception {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select id from recipes where name=?")) {
+            statement.setString(1, "soup");
+            ResultSet result = statement.executeQuery();
+            statement.setString(1, "bound again"); // entry is made when result set is closed
+            while (result.next()) {
+                result.getInt(1);
+            }
+            result.close();
+        }
+        String entry = awaitEntry("select id from recipes where name=?");
+        assertTrue(entry.contains("params: ['soup']"), entry);
+    }
+
+    private static String header(String entry) {
+        return entry.lines().findFirst().orElse("");
+    }
+
+    private static void query(String SQL, Object param) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment(SQL)) {
+            statement.setObject(1, param);
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                result.getObject(1);
+            }
+            result.close();
+        }
+    }
+
+    /**
+     * entry of sql, entries are written by a background thread
+     */
+    private static String awaitEntry(String sql) throws IOException, InterruptedException {
+        Path file = dir.resolve("slow.0.log");
+        for (int i = 0; i < 100; i++) {
+            if (Files.exists(file)) {
+                String text = Files.readString(file, StandardCharsets.UTF_8);
+                int at = text.indexOf("  sql: " + sql);
+                if (at >= 0) {
+                    int start = text.lastIndexOf(System.lineSeparator(), at - System.lineSeparator().length() - 1) + 1;
+                    int end = text.indexOf(System.lineSeparator() + "20", at); // next entry starts with its timestamp
+                    return text.substring(start, end < 0 ? text.length() : end);
+                }
+            }
+            Thread.sleep(50);
+        }
+        fail(sql + " not logged");
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package db;
+
+import db.cache.IdentityMap;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * connects {@link DBConnection} to a new database file of a test, caches of an earlier test are cleared
+ */
+public final class TestDatabase {
+    private TestDatabase() {
+    }
+
+    /**
+     * connect to a database file in given directory, file is created and migrated when it does not exist
+     *
+     * @param dir  temporary directory of test
+     * @param name file name
+     * @return database file
+     */
+    public static File connect(Path dir, String name) {
+        File file = dir.resolve(name).toFile();
+        System.setProperty("recipe.db.path", file.getPath());
+        IdentityMap.clearAll();
+        DBConnection.connect();
+        return file;
+    }
+
+    public static File connect(Path dir) {
+        return connect(dir, "test.db");
+    }
+
+    /**
+     * close connection of test
+     */
+    public static void close() {
+        DBConnection.close();
+        IdentityMap.clearAll();
+        System.clearProperty("recipe.db.path");
+    }
+}
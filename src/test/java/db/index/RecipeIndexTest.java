@@ -0,0 +1,151 @@
+package db.index;
+
+import db.TestDatabase;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Recipe;
+import db.models.RecipeSearch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeIndexTest {
+    @TempDir
+    Path dir;
+
+    private Recipe pancakes;
+    private Recipe omelette;
+    private Recipe salad;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+        pancakes = save("pancakes", List.of("breakfast", "sweet"), List.of("egg", "milk"));
+        omelette = save("omelette", List.of("breakfast"), List.of("egg"));
+        salad = save("salad", List.of("lunch"), List.of("tomato"));
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void indexIsBuiltAtConnect() {
+        assertTrue(RecipeIndex.isBuilt());
+        assertEquals(2, Category.countCategoryRecipes(category("breakfast")));
+        assertEquals(List.of("omelette", "pancakes"), names(Category.getCategoryRecipes(category("breakfast"))));
+    }
+
+    @Test
+    void queryCombinesConditions() {
+        int breakfast = category("breakfast");
+        int sweet = category("sweet");
+        int lunch = category("lunch");
+        int egg = ingredient("egg");
+        int milk = ingredient("milk");
+
+        assertArrayEquals(new int[]{pancakes.getId()}, RecipeIndex.query().allCategories(breakfast, sweet).ids());
+        assertArrayEquals(new int[]{pancakes.getId(), omelette.getId(), salad.getId()},
+                RecipeIndex.query().anyCategories(breakfast, lunch).ids());
+        assertArrayEquals(new int[]{omelette.getId()},
+                RecipeIndex.query().allIngredients(egg).noIngredients(milk).ids());
+        assertArrayEquals(new int[]{salad.getId()}, RecipeIndex.query().noCategories(breakfast).ids());
+        assertEquals(0, RecipeIndex.query().allCategories(breakfast, lunch).bitmap().getCardinality());
+    }
+
+    @Test
+    void writesKeepIndexInLineWithLinkTables() {
+        Recipe recipe = Recipe.find(omelette.getId());
+        recipe.removeCategory(new Category("breakfast"));
+        recipe.addCategory(new Category("dinner"));
+        recipe.update();
+        salad.delete();
+        save("toast", List.of("breakfast"), List.of("bread"));
+
+        for (Category category : Category.all()) {
+            List<String> indexed = names(Category.getCategoryRecipes(category.getId()));
+            int counted = Category.countCategoryRecipes(category.getId());
+            RecipeIndex.clear(); // answer from link table
+            assertFalse(RecipeIndex.isBuilt());
+            assertEquals(names(Category.getCategoryRecipes(category.getId())), indexed, category.getName());
+            assertEquals(Category.countCategoryRecipes(category.getId()), counted, category.getName());
+            RecipeIndex.build();
+        }
+        assertEquals(List.of("omelette"), names(Category.getCategoryRecipes(category("dinner"))));
+    }
+
+    @Test
+    void deletedCategoryIsRemoved() {
+        int lunch = category("lunch");
+        Category.find(lunch).delete();
+        assertEquals(0, Category.countCategoryRecipes(lunch));
+        assertEquals(0, RecipeIndex.query().anyCategories(lunch).ids().length);
+    }
+
+    @Test
+    void searchOnIndexMatchesSearchOnLinkTables() {
+        List<RecipeSearch> searches = List.of(
+                new RecipeSearch().categories(RecipeSearch.Match.ALL, List.of("breakfast", "sweet")),
+                new RecipeSearch().categories(RecipeSearch.Match.ALL, List.of("breakfast", "unknown")),
+                new RecipeSearch().categories(RecipeSearch.Match.ANY, List.of("lunch", "unknown")),
+                new RecipeSearch().categories(RecipeSearch.Match.NONE, List.of("breakfast", "unknown")),
+                new RecipeSearch().categories(RecipeSearch.Match.ANY, List.of("breakfast")).ingredients(RecipeSearch.Match.NONE, List.of("milk")),
+                new RecipeSearch().ingredients(RecipeSearch.Match.ALL, List.of("egg")));
+        for (RecipeSearch search : searches) {
+            List<Integer> indexed = search.find().stream().map(Recipe::getId).toList();
+            List<Integer> paged = search.page(omelette.getId() - 1, 1).stream().map(Recipe::getId).toList();
+            RecipeIndex.clear(); // answer from link tables
+            assertEquals(search.find().stream().map(Recipe::getId).toList(), indexed);
+            assertEquals(search.page(omelette.getId() - 1, 1).stream().map(Recipe::getId).toList(), paged);
+            RecipeIndex.build();
+        }
+        assertEquals(List.of("omelette"), names(searches.get(4).find()));
+    }
+
+    @Test
+    void pagesOfIdsStartAfterGivenId() {
+        int breakfast = category("breakfast");
+        RecipeIndex.Query query = RecipeIndex.query().anyCategories(breakfast, category("lunch"));
+        assertArrayEquals(new int[]{pancakes.getId(), omelette.getId()}, query.ids(0, 2));
+        assertArrayEquals(new int[]{omelette.getId(), salad.getId()}, query.ids(pancakes.getId(), 5));
+        assertArrayEquals(new int[0], query.ids(salad.getId(), 5));
+        assertArrayEquals(new int[0], query.ids(Integer.MAX_VALUE, 5));
+
+        Recipe toast = save("toast", List.of("breakfast"), List.of("bread"));
+        assertEquals(List.of(omelette.getId(), toast.getId()),
+                Category.getCategoryRecipesPage(breakfast, pancakes.getId(), 5).stream().map(Recipe::getId).toList());
+        assertEquals(List.of(toast.getId()),
+                Ingredient.getIngredientRecipesPage(ingredient("bread"), 0, 5).stream().map(Recipe::getId).toList());
+    }
+
+    private static Recipe save(String name, List<String> categories, List<String> ingredients) {
+        Recipe recipe = new Recipe(name, "",
+                new ArrayList<>(categories.stream().map(Category::new).toList()),
+                new ArrayList<>(ingredients.stream().map(Ingredient::new).toList()));
+        recipe.save();
+        return recipe;
+    }
+
+    private static int category(String name) {
+        return Category.find(name).getId();
+    }
+
+    private static int ingredient(String name) {
+        return Ingredient.find(name).getId();
+    }
+
+    private static List<String> names(List<Recipe> recipes) {
+        return recipes.stream().map(Recipe::getName).sorted().toList();
+    }
+}
@@ -0,0 +1,89 @@
+package db.jfr;
+
+import db.TestDatabase;
+import db.cache.IdentityMap;
+import db.models.Category;
+import db.models.Recipe;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderEventsTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void statementsWritesAndLookupsAreRecorded() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            Recipe recipe = new Recipe("pancakes", "whisk", new ArrayList<>(), new ArrayList<>());
+            recipe.save();
+            IdentityMap.clearAll();
+            Category.find("breakfast");
+            Category.find("breakfast");
+        });
+
+        List<RecordedEvent> writes = named(events, "recipe.ModelWrite");
+        assertEquals(1, writes.size());
+        assertEquals("Recipe", writes.get(0).getString("model"));
+        assertEquals("save", writes.get(0).getString("operation"));
+
+        List<RecordedEvent> queries = named(events, "recipe.Query");
+        assertTrue(queries.stream().anyMatch((event) -> event.getString("sql").equals("insert into recipes (name,instructions) values(?,...)")),
+                queries.toString());
+        assertFalse(queries.stream().anyMatch((event) -> event.getBoolean("failed")));
+
+        List<RecordedEvent> lookups = named(events, "recipe.CacheLookup");
+        assertTrue(lookups.stream().anyMatch((event) -> event.getString("key").equals("breakfast") && !event.getBoolean("hit")),
+                lookups.toString());
+    }
+
+    @Test
+    void nothingIsRecordedWithoutRecording() {
+        assertNull(QueryEvent.start());
+        assertNull(ModelWriteEvent.start());
+        assertNull(CacheEvent.start());
+    }
+
+    private List<RecordedEvent> record(Runnable work) throws IOException {
+        Path file = dir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("recipe.Query", "recipe.ModelWrite", "recipe.CacheLookup")) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter((event) -> event.getEventType().getName().equals(name)).toList();
+    }
+}
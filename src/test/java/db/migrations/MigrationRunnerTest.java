@@ -0,0 +1,103 @@
+package db.migrations;
+
+import db.DBConnection;
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationRunnerTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void newDatabaseIsOnLatestVersion() throws SQLException {
+        assertEquals(Migrations.latestVersion(), MigrationRunner.currentVersion());
+        assertEquals(0, MigrationRunner.migrate(), "current schema must not be migrated again");
+    }
+
+    @Test
+    void reconnectKeepsVersionAndData() throws SQLException {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("insert into categories (name) values('kept')");
+        }
+        TestDatabase.close();
+        TestDatabase.connect(dir);
+        assertEquals(Migrations.latestVersion(), MigrationRunner.currentVersion());
+        assertTrue(exists("select 1 from categories where name='kept'"));
+    }
+
+    @Test
+    void onlyNewStepsAreApplied() throws SQLException {
+        ArrayList<Migration> migrations = new ArrayList<>(Migrations.ALL);
+        int version = Migrations.latestVersion() + 1;
+        migrations.add(new Migration(version, "add notes", "create table notes(id integer primary key, text TEXT)"));
+        assertEquals(1, MigrationRunner.migrate(migrations));
+        assertEquals(version, MigrationRunner.currentVersion());
+        assertEquals(0, MigrationRunner.migrate(migrations));
+    }
+
+    @Test
+    void failedStepIsRolledBack() throws SQLException {
+        ArrayList<Migration> migrations = new ArrayList<>(Migrations.ALL);
+        migrations.add(new Migration(Migrations.latestVersion() + 1, "broken",
+                "create table notes(id integer primary key)", "insert into missing_table values(1)"));
+        SQLException error = assertThrows(SQLException.class, () -> MigrationRunner.migrate(migrations));
+        assertTrue(error.getMessage().contains("broken"), error.getMessage());
+        assertEquals(Migrations.latestVersion(), MigrationRunner.currentVersion());
+        assertFalse(exists("select 1 from sqlite_master where name='notes'"));
+    }
+
+    @Test
+    void missingVersionTableIsVersionZero() throws SQLException {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("drop table schema_version");
+        }
+        assertEquals(0, MigrationRunner.currentVersion());
+    }
+
+    @Test
+    void otherErrorsAreNotVersionZero() throws SQLException {
+        try (Statement statement = DBConnection.getStatment()) {
+            statement.execute("drop table schema_version");
+            statement.execute("create table versions(version integer)");
+            statement.execute("create view schema_version as select version from versions");
+            statement.execute("drop table versions"); // reading view fails with another error than a missing table
+        }
+        assertThrows(SQLException.class, MigrationRunner::currentVersion);
+        assertThrows(SQLException.class, () -> MigrationRunner.migrate(List.of(Migrations.ALL.get(0))));
+    }
+
+    private static boolean exists(String SQL) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment(SQL)) {
+            ResultSet result = statement.executeQuery();
+            boolean exists = result.next();
+            result.close();
+            return exists;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package db.models;
+
+import db.DBConnection;
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CategoryTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void foundCategoryIsCached() {
+        new Category("breakfast").save();
+        long hits = Category.cacheStats().hits();
+        assertNotNull(Category.find("breakfast"));
+        assertEquals(hits + 1, Category.cacheStats().hits());
+    }
+
+    @Test
+    void rolledBackRowsAreNotCachedAndOtherEntriesStay() {
+        new Category("kept").save();
+        int size = Category.cacheStats().size();
+        assertThrows(SQLException.class, () -> DBConnection.inTransaction(() -> {
+            Category category = new Category("rolled back");
+            category.save();
+            assertNotNull(Category.find("rolled back"), "unit sees its own row");
+            assertNotNull(Category.find(category.getId()));
+            assertEquals(size, Category.cacheStats().size(), "row of open unit was cached");
+            throw new SQLException("failed");
+        }));
+        assertNull(Category.find("rolled back"));
+
+        long hits = Category.cacheStats().hits();
+        assertNotNull(Category.find("kept"));
+        assertEquals(hits + 1, Category.cacheStats().hits(), "rollback emptied cache");
+    }
+
+    @Test
+    void renameIsCachedAfterCommit() throws SQLException {
+        Category category = new Category("lunch");
+        category.save();
+        DBConnection.inTransaction(() -> {
+            Category renamed = Category.find(category.getId());
+            renamed.setName("dinner");
+            renamed.update();
+            return null;
+        });
+        assertEquals("dinner", Category.find(category.getId()).getName());
+        assertNull(Category.find("lunch"));
+    }
+
+    @Test
+    void deletedCategoryLeavesCache() {
+        Category category = new Category("lunch");
+        category.save();
+        assertNotNull(Category.find(category.getId()));
+        category.delete();
+        assertNull(Category.find(category.getId()));
+        assertNull(Category.find("lunch"));
+    }
+}
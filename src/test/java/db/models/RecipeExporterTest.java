@@ -0,0 +1,62 @@
+package db.models;
+
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecipeExporterTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+        new Recipe("odd names", "x",
+                new ArrayList<>(List.of(new Category("a|b"), new Category("c\\d"))),
+                new ArrayList<>(List.of(new Ingredient("salt|pepper")))).save();
+        new Recipe("plain", "mix \"well\", then serve", new ArrayList<>(List.of(new Category("lunch"))), new ArrayList<>()).save();
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void csvRoundTripKeepsSeparatorInNames() throws IOException, SQLException {
+        roundTrip("export.csv");
+    }
+
+    @Test
+    void jsonlRoundTripKeepsNames() throws IOException, SQLException {
+        roundTrip("export.jsonl");
+    }
+
+    private void roundTrip(String name) throws IOException, SQLException {
+        File file = dir.resolve(name).toFile();
+        assertEquals(2, new RecipeExporter(file).run());
+        TestDatabase.close();
+
+        TestDatabase.connect(dir, "copy.db");
+        assertNull(Recipe.find("odd names"));
+        new RecipeImporter(file).run();
+        Recipe imported = Recipe.find("odd names");
+        assertNotNull(imported);
+        assertEquals(List.of("a|b", "c\\d"), imported.getCategories().stream().map(Category::getName).sorted().toList());
+        assertEquals(List.of("salt|pepper"), imported.getIngredients().stream().map(Ingredient::getName).toList());
+        assertEquals("mix \"well\", then serve", Recipe.find("plain").getInstructions());
+    }
+}
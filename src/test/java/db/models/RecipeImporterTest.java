@@ -0,0 +1,131 @@
+package db.models;
+
+import db.DBConnection;
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeImporterTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void importsJsonlWithLinksAndText() throws IOException, SQLException {
+        File file = write("recipes.jsonl",
+                "{\"name\":\"pancakes\",\"instructions\":\"whisk and fry\",\"categories\":[\"breakfast\"],\"ingredients\":[\"egg\",\"milk\"]}",
+                "",
+                "{\"name\":\"omelette\",\"instructions\":\"whisk and fold\",\"categories\":\"breakfast|eggs\",\"ingredients\":\"egg\"}",
+                "{\"instructions\":\"no name\"}");
+        RecipeImporter.Progress progress = new RecipeImporter(file).run();
+
+        assertTrue(progress.done());
+        assertEquals(2, progress.imported());
+        assertEquals(1, progress.skipped());
+        assertEquals(2, Recipe.count());
+        assertEquals(List.of("breakfast", "eggs"), names(Recipe.find("omelette").getCategories()));
+        assertEquals(2, Category.find("breakfast").recipesCount());
+        assertEquals(2, Recipe.countText("whisk"));
+        assertEquals(1, Recipe.countText("fold"));
+    }
+
+    @Test
+    void importedFileIsNotImportedAgain() throws IOException, SQLException {
+        File file = write("recipes.csv", "name,instructions,categories,ingredients", "soup,boil,dinner,water", "salad,mix,lunch|dinner,");
+        assertEquals(2, new RecipeImporter(file).run().imported());
+
+        RecipeImporter.Progress again = new RecipeImporter(file).run();
+        assertTrue(again.done());
+        assertEquals(0, again.imported());
+        assertEquals(2, Recipe.count());
+    }
+
+    @Test
+    void idsOfDeletedRecipesAreNotReused() throws IOException, SQLException {
+        new RecipeImporter(write("first.csv", "name", "a", "b", "c")).run();
+        Recipe deleted = Recipe.find("c");
+        deleted.delete();
+
+        new RecipeImporter(write("second.csv", "name", "d")).run();
+        assertTrue(Recipe.find("d").getId() > deleted.getId());
+        Recipe saved = new Recipe("e", "", new ArrayList<>(), new ArrayList<>());
+        saved.save();
+        assertTrue(saved.getId() > Recipe.find("d").getId());
+    }
+
+    @Test
+    void recipesSavedAfterImportAreInTextIndex() throws IOException, SQLException {
+        new RecipeImporter(write("recipes.csv", "name,instructions", "bread,knead")).run();
+        new Recipe("cake", "knead gently", new ArrayList<>(), new ArrayList<>()).save();
+        assertEquals(2, Recipe.countText("knead"));
+    }
+
+    @Test
+    void incrementalImportIndexesOnlyNewRecipes() throws IOException, SQLException {
+        new RecipeImporter(write("first.csv", "name,instructions", "bread,knead", "soup,boil")).run();
+        new Recipe("cake", "knead gently", new ArrayList<>(), new ArrayList<>()).save();
+        new RecipeImporter(write("second.csv", "name,instructions", "pizza,knead and bake")).run();
+
+        assertEquals(3, Recipe.countText("knead"));
+        assertEquals(1, Recipe.countText("boil"));
+        assertEquals(1, Recipe.countText("bake"));
+    }
+
+    @Test
+    void namesOfFailedBatchAreNotInDictionary() throws IOException, SQLException {
+        System.setProperty("recipe.db.import.batchSize", "1");
+        try {
+            RecipeImporter importer = new RecipeImporter(write("recipes.csv", "name,instructions,categories", "good,,old", "bad,,new"));
+            try (Statement statement = DBConnection.getStatment()) {
+                statement.execute("create trigger reject_bad before insert on recipes when new.name='bad' begin select raise(abort,'bad recipe'); end");
+            }
+            assertThrows(SQLException.class, importer::run);
+            assertNull(Category.find("new"));
+            try (Statement statement = DBConnection.getStatment()) {
+                statement.execute("drop trigger reject_bad");
+            }
+
+            assertTrue(importer.run().done());
+            assertEquals(List.of("new"), names(Recipe.find("bad").getCategories()));
+            assertEquals(List.of("old"), names(Recipe.find("good").getCategories()));
+        } finally {
+            System.clearProperty("recipe.db.import.batchSize");
+        }
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+
+    private static List<String> names(List<Category> categories) {
+        return categories.stream().map(Category::getName).sorted().toList();
+    }
+}
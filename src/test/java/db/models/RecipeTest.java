@@ -0,0 +1,162 @@
+package db.models;
+
+import db.QueryBudget;
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void connect() {
+        TestDatabase.connect(dir);
+    }
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+    }
+
+    @Test
+    void nameMatchRanksAboveInstructionsMatch() {
+        save("tomato soup", "boil water and stir");
+        save("bread", "serve with tomato slices and more tomato");
+        save("pasta", "boil");
+
+        assertEquals(List.of("tomato soup", "bread"), names(Recipe.searchText("tomato", 0, 10)));
+        assertEquals(2, Recipe.countText("tomato"));
+    }
+
+    @Test
+    void allWordsMustMatch() {
+        save("tomato soup", "boil water");
+        save("pasta", "boil water with tomato");
+        save("rice", "boil water");
+
+        assertEquals(List.of("pasta", "tomato soup"), names(Recipe.searchText("boil tomato", 0, 10)).stream().sorted().toList());
+        assertEquals(3, Recipe.countText("water"));
+    }
+
+    @Test
+    void pagesFollowRanking() {
+        for (int i = 0; i < 5; i++) {
+            save("cake " + i, "bake");
+        }
+        List<String> all = names(Recipe.searchText("bake", 0, 5));
+        assertEquals(5, all.size());
+        assertEquals(all.subList(0, 2), names(Recipe.searchText("bake", 0, 2)));
+        assertEquals(all.subList(2, 4), names(Recipe.searchText("bake", 1, 2)));
+        assertEquals(all.subList(4, 5), names(Recipe.searchText("bake", 2, 2)));
+    }
+
+    @Test
+    void queryOperatorsInTextAreWords() {
+        save("soup", "boil");
+        assertEquals(0, Recipe.countText("soup OR \"cake"));
+        assertEquals(0, Recipe.countText("*"));
+        assertEquals(1, Recipe.countText("soup*"), "star is not a prefix operator");
+        assertEquals(0, Recipe.searchText("", 0, 10).size());
+    }
+
+    @Test
+    void updatedAndDeletedRecipesAreReindexed() {
+        Recipe soup = save("soup", "boil");
+        Recipe bread = save("bread", "bake");
+        soup.setInstructions("simmer");
+        soup.update();
+        bread.delete();
+
+        assertEquals(0, Recipe.countText("boil"));
+        assertEquals(1, Recipe.countText("simmer"));
+        assertEquals(0, Recipe.countText("bread"));
+    }
+
+    @Test
+    void unchangedRecipeUpdatesWithoutStatements() {
+        int id = pancakes().getId();
+        Recipe loaded = Recipe.find(id);
+        assertFalse(loaded.isDirty());
+        assertEquals(0, QueryBudget.countQueries(loaded::update));
+    }
+
+    @Test
+    void savedRecipeIsClean() {
+        Recipe recipe = new Recipe("waffles", "bake", new ArrayList<>(List.of(new Category("breakfast"))), new ArrayList<>());
+        assertTrue(recipe.isDirty());
+        recipe.save();
+        assertFalse(recipe.isDirty());
+        assertEquals(0, QueryBudget.countQueries(recipe::update));
+    }
+
+    @Test
+    void changedLinksAreWritten() {
+        int id = pancakes().getId();
+        Recipe recipe = Recipe.find(id);
+        recipe.removeCategory(new Category("sweet"));
+        recipe.addCategory(new Category("brunch"));
+        recipe.addIngredient(new Ingredient("flour"));
+        assertTrue(recipe.isDirty());
+        recipe.update();
+        assertFalse(recipe.isDirty());
+
+        Recipe loaded = Recipe.find(id);
+        assertEquals(List.of("breakfast", "brunch"), loaded.getCategories().stream().map(Category::getName).sorted().toList());
+        assertEquals(List.of("egg", "flour", "milk"), loaded.getIngredients().stream().map(Ingredient::getName).sorted().toList());
+        assertEquals(0, Category.find("sweet").recipesCount());
+        assertEquals(1, Category.find("brunch").recipesCount());
+    }
+
+    @Test
+    void renameDoesNotTouchLinks() {
+        int id = pancakes().getId();
+        Recipe recipe = Recipe.find(id);
+        recipe.setName("crepes");
+        assertEquals(1, QueryBudget.countQueries(recipe::update));
+        assertEquals("crepes", Recipe.find(id).getName());
+        assertEquals(2, Recipe.find(id).getCategories().size());
+    }
+
+    @Test
+    void recipeWithoutLoadedStateIsWritten() {
+        int id = pancakes().getId();
+        Recipe recipe = new Recipe(id, "pancakes", "whisk well",
+                new ArrayList<>(List.of(new Category("breakfast"))), new ArrayList<>(List.of(new Ingredient("egg"))));
+        assertTrue(recipe.isDirty());
+        recipe.update();
+
+        Recipe loaded = Recipe.find(id);
+        assertEquals("whisk well", loaded.getInstructions());
+        assertEquals(List.of("breakfast"), loaded.getCategories().stream().map(Category::getName).toList());
+        assertEquals(List.of("egg"), loaded.getIngredients().stream().map(Ingredient::getName).toList());
+    }
+
+    private static Recipe pancakes() {
+        Recipe recipe = new Recipe("pancakes", "whisk",
+                new ArrayList<>(List.of(new Category("breakfast"), new Category("sweet"))),
+                new ArrayList<>(List.of(new Ingredient("egg"), new Ingredient("milk"))));
+        recipe.save();
+        return recipe;
+    }
+
+    private static Recipe save(String name, String instructions) {
+        Recipe recipe = new Recipe(name, instructions, new ArrayList<>(), new ArrayList<>());
+        recipe.save();
+        return recipe;
+    }
+
+    private static List<String> names(List<Recipe> recipes) {
+        return recipes.stream().map(Recipe::getName).toList();
+    }
+}
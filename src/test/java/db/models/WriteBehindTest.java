@@ -0,0 +1,179 @@
+package db.models;
+
+import db.DBConnection;
+import db.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void close() {
+        TestDatabase.close();
+        System.clearProperty("recipe.db.writeBehind.durability");
+        System.clearProperty("recipe.db.writeBehind.linger");
+    }
+
+    @Test
+    void committedFutureWaitsForGroupCommit() throws Exception {
+        connect(WriteBehind.Durability.COMMITTED);
+        Probe probe = new Probe("second");
+        CompletableFuture<Integer> first = new Category("first").saveAsync();
+        CompletableFuture<Integer> second = probe.saveAsync();
+
+        assertTrue(probe.entered.await(5, TimeUnit.SECONDS));
+        assertFalse(first.isDone(), "completed before commit of its group");
+        assertEquals(0, committed("first"));
+        probe.release.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        assertTrue(second.get(5, TimeUnit.SECONDS) > 0);
+        assertEquals(1, committed("first"));
+        assertEquals("1", probe.synchronous, "group commits with synchronous of profile");
+    }
+
+    @Test
+    void writtenFutureCompletesBeforeCommit() throws Exception {
+        connect(WriteBehind.Durability.WRITTEN);
+        Probe probe = new Probe("second");
+        CompletableFuture<Integer> first = new Category("first").saveAsync();
+        probe.saveAsync();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        assertTrue(probe.entered.await(5, TimeUnit.SECONDS));
+        assertEquals(0, committed("first"), "group is not committed yet");
+        probe.release.countDown();
+        WriteBehind.flush();
+        assertEquals(1, committed("first"));
+    }
+
+    @Test
+    void syncedGroupCommitsWithFullSynchronous() throws Exception {
+        connect(WriteBehind.Durability.SYNCED);
+        Probe probe = new Probe("synced");
+        probe.release.countDown();
+        assertTrue(probe.saveAsync().get(5, TimeUnit.SECONDS) > 0);
+        assertEquals("2", probe.synchronous);
+        assertEquals("1", DBConnection.activeSettings().get("synchronous"), "profile setting is restored after group");
+    }
+
+    @Test
+    void failedOperationFailsAloneAndGroupIsWrittenAgain() throws Exception {
+        connect(WriteBehind.Durability.COMMITTED);
+        CompletableFuture<Integer> first = new Category("same").saveAsync();
+        CompletableFuture<Integer> duplicate = new Category("same").saveAsync();
+        CompletableFuture<Integer> last = new Category("other").saveAsync();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        assertTrue(last.get(5, TimeUnit.SECONDS) > 0);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> duplicate.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, error.getCause());
+        assertEquals(1, committed("same"));
+        assertEquals(1, committed("other"));
+    }
+
+    @Test
+    void closeDrainsQueueAndReconnectAcceptsWrites() throws Exception {
+        connect(WriteBehind.Durability.COMMITTED);
+        ArrayList<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(new Category("category " + i).saveAsync());
+        }
+        TestDatabase.close();
+        for (CompletableFuture<Integer> future : futures) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        }
+        ExecutionException rejected = assertThrows(ExecutionException.class, () -> new Category("closed").saveAsync().get());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+        TestDatabase.connect(dir);
+        assertEquals(200, Category.count());
+        assertTrue(new Category("after reconnect").saveAsync().get(5, TimeUnit.SECONDS) > 0);
+        assertEquals(1, committed("after reconnect"));
+    }
+
+    private void connect(WriteBehind.Durability durability) {
+        System.setProperty("recipe.db.writeBehind.durability", durability.name());
+        System.setProperty("recipe.db.writeBehind.linger", "500"); // operations of a test share one group
+        TestDatabase.connect(dir);
+    }
+
+    /**
+     * count of committed categories with name, read on a reader connection
+     */
+    private static int committed(String name) throws SQLException {
+        try (PreparedStatement statement = DBConnection.prepareStatment("select count(*) from categories where name=?")) {
+            statement.setString(1, name);
+            ResultSet result = statement.executeQuery();
+            int count = result.next() ? result.getInt(1) : 0;
+            result.close();
+            return count;
+        }
+    }
+
+    /**
+     * saves a category in group transaction, then waits until released so the group stays open
+     */
+    private static class Probe implements Model {
+        private final Category category;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile String synchronous;
+
+        Probe(String name) {
+            this.category = new Category(name);
+        }
+
+        @Override
+        public void save() {
+            category.save();
+            try (Statement statement = DBConnection.getStatment()) {
+                ResultSet result = statement.executeQuery("pragma synchronous");
+                synchronous = result.next() ? result.getString(1) : null;
+                result.close();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void update() {
+        }
+
+        @Override
+        public void delete() {
+        }
+
+        @Override
+        public int getId() {
+            return category.getId();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package server;
+
+import db.TestDatabase;
+import db.models.Category;
+import db.models.Ingredient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeServerTest {
+    @TempDir
+    static Path dir;
+
+    private static RecipeServer server;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws IOException {
+        TestDatabase.connect(dir);
+        server = new RecipeServer(0);
+        server.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop(0);
+        TestDatabase.close();
+    }
+
+    @Test
+    void createReadUpdateDeleteRecipe() throws Exception {
+        HttpResponse<String> created = request("POST", "/recipes",
+                "{\"name\":\"pancakes\",\"instructions\":\"whisk\",\"categories\":[\"breakfast\"],\"ingredients\":[\"egg\",\"milk\"]}");
+        assertEquals(201, created.statusCode());
+        long id = (Long) Json.parseObject(created.body()).get("id");
+
+        Map<String, Object> recipe = Json.parseObject(request("GET", "/recipes/" + id, null).body());
+        assertEquals("pancakes", recipe.get("name"));
+        assertEquals(2, ((List<?>) recipe.get("ingredients")).size());
+
+        HttpResponse<String> updated = request("PUT", "/recipes/" + id, "{\"instructions\":\"whisk well\",\"categories\":[\"brunch\"]}");
+        assertEquals(200, updated.statusCode());
+        Map<String, Object> json = Json.parseObject(updated.body());
+        assertEquals("whisk well", json.get("instructions"));
+        assertEquals("brunch", ((Map<?, ?>) ((List<?>) json.get("categories")).get(0)).get("name"));
+
+        assertEquals(204, request("DELETE", "/recipes/" + id, null).statusCode());
+        assertEquals(404, request("GET", "/recipes/" + id, null).statusCode());
+    }
+
+    @Test
+    void listsCategoriesInKeysetPages() throws Exception {
+        for (String name : List.of("page a", "page b", "page c")) {
+            assertEquals(201, request("POST", "/categories", "{\"name\":\"" + name + "\"}").statusCode());
+        }
+        ArrayList<Object> names = new ArrayList<>();
+        Object next = 0L;
+        while (next != null) {
+            Map<String, Object> page = Json.parseObject(request("GET", "/categories?limit=2&after=" + next, null).body());
+            ((List<?>) page.get("items")).forEach((item) -> names.add(((Map<?, ?>) item).get("name")));
+            next = page.get("next");
+        }
+        assertEquals(Category.count(), names.size());
+        assertTrue(names.containsAll(List.of("page a", "page b", "page c")));
+    }
+
+    @Test
+    void searchesText() throws Exception {
+        request("POST", "/recipes", "{\"name\":\"tomato soup\",\"instructions\":\"boil\"}");
+        List<?> found = (List<?>) Json.parse(request("GET", "/recipes/search?q=tomato", null).body());
+        assertEquals(1, found.size());
+        assertEquals("tomato soup", ((Map<?, ?>) found.get(0)).get("name"));
+    }
+
+    @Test
+    void searchPageSizeIsAtLeastOne() throws Exception {
+        request("POST", "/recipes", "{\"name\":\"lentil stew\",\"instructions\":\"simmer\"}");
+        assertEquals(1, ((List<?>) Json.parse(request("GET", "/recipes/search?q=lentil&size=0", null).body())).size());
+        assertEquals(1, ((List<?>) Json.parse(request("GET", "/recipes/search?q=lentil&size=-5", null).body())).size());
+        assertEquals(400, request("GET", "/recipes/search?q=lentil&page=-1", null).statusCode());
+    }
+
+    @Test
+    void recipesOfCategoryAndIngredientAndNamesAreKeysetPages() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            request("POST", "/recipes", "{\"name\":\"paged " + i + "\",\"categories\":[\"paged\"],\"ingredients\":[\"paged salt\"]}");
+        }
+        int category = Category.find("paged").getId();
+        int ingredient = Ingredient.find("paged salt").getId();
+        List<Object> expected = List.of("paged 0", "paged 1", "paged 2", "paged 3", "paged 4");
+        assertEquals(expected, pagedNames("/categories/" + category + "/recipes?size=2"));
+        assertEquals(expected, pagedNames("/recipes/search?categories=paged&ingredients=paged%20salt&match=all&size=2"));
+        assertEquals(expected, pagedNames("/ingredients/" + ingredient + "/recipes?size=3"));
+    }
+
+    @Test
+    void badRequestsAreReported() throws Exception {
+        assertEquals(400, request("POST", "/recipes", "{\"instructions\":\"no name\"}").statusCode());
+        assertEquals(400, request("POST", "/recipes", "not json").statusCode());
+        assertEquals(400, request("GET", "/recipes?limit=many", null).statusCode());
+        assertEquals(400, request("GET", "/recipes/search", null).statusCode());
+        assertEquals(404, request("GET", "/recipes/pancakes", null).statusCode());
+        assertEquals(405, request("PATCH", "/recipes", "{}").statusCode());
+        assertEquals(404, request("GET", "/recipes/0", null).statusCode());
+    }
+
+    @Test
+    void unknownPathSegmentsAreNotFound() throws Exception {
+        long id = (Long) Json.parseObject(request("POST", "/categories", "{\"name\":\"segments\"}").body()).get("id");
+        assertEquals(200, request("GET", "/categories/" + id + "/recipes", null).statusCode());
+        assertEquals(404, request("GET", "/categories/" + id + "/anything", null).statusCode());
+        assertEquals(404, request("GET", "/categories/" + id + "/recipes/1", null).statusCode());
+        assertEquals(404, request("GET", "/ingredients/1/2", null).statusCode());
+        assertEquals(404, request("GET", "/recipes/1/anything", null).statusCode());
+        assertEquals(404, request("GET", "/recipes/search/more?q=soup", null).statusCode());
+    }
+
+    /**
+     * names of all items of a keyset paged list, following next until last page
+     */
+    private static List<Object> pagedNames(String path) throws Exception {
+        ArrayList<Object> names = new ArrayList<>();
+        Object next = 0L;
+        while (next != null) {
+            Map<String, Object> page = Json.parseObject(request("GET", path + "&after=" + next, null).body());
+            ((List<?>) page.get("items")).forEach((item) -> names.add(((Map<?, ?>) item).get("name")));
+            next = page.get("next");
+        }
+        return names;
+    }
+
+    private static HttpResponse<String> request(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,91 @@
+package service;
+
+import db.TestDatabase;
+import db.models.Category;
+import db.models.Ingredient;
+import db.models.Recipe;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeServiceTest {
+    private static final int RECIPES = 20;
+
+    @TempDir
+    static Path dir;
+
+    private static RecipeService service;
+    private static final ArrayList<Integer> ids = new ArrayList<>();
+
+    @BeforeAll
+    static void connect() {
+        System.setProperty("recipe.db.pool.timeout", "2000"); // an exhausted pool fails test instead of waiting
+        TestDatabase.connect(dir);
+        for (int i = 0; i < RECIPES; i++) {
+            Recipe recipe = new Recipe("soup " + i, "boil", new ArrayList<>(List.of(new Category("dinner"))),
+                    new ArrayList<>(List.of(new Ingredient("water"))));
+            recipe.save();
+            ids.add(recipe.getId());
+        }
+        service = new RecipeService();
+    }
+
+    @AfterAll
+    static void close() {
+        service.close();
+        TestDatabase.close();
+        System.clearProperty("recipe.db.pool.timeout");
+    }
+
+    @Test
+    void manyConcurrentReadsShareReaders() throws Exception {
+        ArrayList<CompletableFuture<Recipe>> reads = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            reads.add(service.findById(ids.get(i % RECIPES)));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < reads.size(); i++) {
+            Recipe recipe = reads.get(i).join();
+            assertNotNull(recipe);
+            assertEquals(ids.get(i % RECIPES), recipe.getId());
+        }
+    }
+
+    @Test
+    void listsAndSearches() throws Exception {
+        ArrayList<Recipe> first = service.listPage(0, 5).get(5, TimeUnit.SECONDS);
+        assertEquals(ids.subList(0, 5), first.stream().map(Recipe::getId).toList());
+        ArrayList<Recipe> second = service.listPage(first.get(4).getId(), 5).get(5, TimeUnit.SECONDS);
+        assertEquals(ids.subList(5, 10), second.stream().map(Recipe::getId).toList());
+
+        assertEquals(1, service.search("soup 7", 0, 10).get(5, TimeUnit.SECONDS).size());
+        int dinner = Category.find("dinner").getId();
+        assertEquals(RECIPES, service.categoryRecipes(dinner, 0, RECIPES).get(5, TimeUnit.SECONDS).size());
+        ArrayList<Recipe> after = service.categoryRecipes(dinner, ids.get(14), 10).get(5, TimeUnit.SECONDS);
+        assertEquals(ids.subList(15, RECIPES), after.stream().map(Recipe::getId).toList());
+        assertEquals("dinner", service.findCategory(dinner).get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    void writesCompleteWithGeneratedId() throws Exception {
+        int id = service.create(new Category("lunch")).get(10, TimeUnit.SECONDS);
+        assertTrue(id > 0);
+        assertEquals("lunch", service.findCategory(id).get(5, TimeUnit.SECONDS).getName());
+
+        Category category = Category.find(id);
+        service.delete(category).get(10, TimeUnit.SECONDS);
+        assertNull(service.findCategory(id).get(5, TimeUnit.SECONDS));
+    }
+}